@@ -0,0 +1,62 @@
+/******************************************************************************
+ *  Compilation:  javac AncestorIndexBenchmark.java
+ *  Execution:    java AncestorIndexBenchmark digraph.txt [queries]
+ *  Dependencies: SAP.java AncestorIndex.java CompactDigraph.java IntLists.java
+ *
+ *  Read a DAG from the file specified as command line argument, build the
+ *  ancestor index and time random SAP.length queries answered by the index
+ *  and by bfs. digraph-wordnet.txt is the hypernyms.txt graph.
+ *
+ *  % java AncestorIndexBenchmark ../test-input/digraph-wordnet.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.Stopwatch;
+
+public class AncestorIndexBenchmark {
+    
+    public static void main(String[] args) {
+        Digraph G = new Digraph(new In(args[0]));
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        
+        CompactDigraph compact = new CompactDigraph(G);
+        int[] order = compact.topologicalOrder();
+        Stopwatch build = new Stopwatch();
+        AncestorIndex index = new AncestorIndex(compact, order);
+        StdOut.printf("index build: %.3f seconds, %d label entries (%.1f per vertex)\n",
+                      build.elapsedTime(), index.size(), (double) index.size() / G.V());
+        
+        SAP bfs = new SAP(G);
+        SAP indexed = new SAP(G, SAP.Strategy.ANCESTOR_INDEX, 0);
+        int[] v = new int[queries];
+        int[] w = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            v[i] = StdRandom.uniformInt(G.V());
+            w[i] = StdRandom.uniformInt(G.V());
+        }
+        
+        for (int round = 0; round < 3; round++) {
+            time(bfs, v, w);
+            time(indexed, v, w);
+        }
+        StdOut.printf("bfs:   %8.0f ns/query\n", time(bfs, v, w));
+        StdOut.printf("index: %8.0f ns/query\n", time(indexed, v, w));
+    }
+    
+    private static double time(SAP sap, int[] v, int[] w) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < v.length; i++) {
+            checksum += sap.length(v[i], w[i]);
+        }
+        long nanos = System.nanoTime() - start;
+        if (checksum == Long.MIN_VALUE) {
+            StdOut.println(checksum);
+        }
+        return (double) nanos / v.length;
+    }
+}
@@ -0,0 +1,78 @@
+/******************************************************************************
+ *  Compilation:  javac BalancedBFSBenchmark.java
+ *  Execution:    java BalancedBFSBenchmark digraph.txt [queries] [largeSet]
+ *  Dependencies: SAP.java
+ *
+ *  Read a digraph from the file specified as command line argument and time
+ *  random multi-source SAP.length queries answered by the lockstep bfs and by
+ *  the frontier-balanced bfs. One side of each query has a single vertex, or a
+ *  few, and the other up to largeSet vertices, as when a noun with many synsets
+ *  (such as "head") is compared with a noun with one; a third mix has small sets
+ *  on both sides. digraph-wordnet.txt is the hypernyms.txt graph.
+ *
+ *  % java BalancedBFSBenchmark ../test-input/digraph-wordnet.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class BalancedBFSBenchmark {
+    
+    public static void main(String[] args) {
+        Digraph G = new Digraph(new In(args[0]));
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        int largeSet = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        
+        SAP bfs = new SAP(G);
+        SAP balanced = new SAP(G, SAP.Strategy.BALANCED_BFS, 0);
+        
+        int[][][] mixes = {
+            sets(G.V(), queries, 1, 1), sets(G.V(), queries, 1, largeSet),
+            sets(G.V(), queries, 1, 3), sets(G.V(), queries, 1, 3)
+        };
+        int[][][] others = {
+            sets(G.V(), queries, 1, 1), sets(G.V(), queries, 1, 1),
+            sets(G.V(), queries, 1, 3), sets(G.V(), queries, largeSet, largeSet)
+        };
+        String[] names = { "1 x 1", "1 x 1.." + largeSet, "1..3 x 1..3", "1..3 x " + largeSet };
+        
+        // the best of several rounds, so that the first ones warm the code up
+        for (int m = 0; m < mixes.length; m++) {
+            double bfsTime = Double.POSITIVE_INFINITY;
+            double balancedTime = Double.POSITIVE_INFINITY;
+            for (int round = 0; round < 5; round++) {
+                bfsTime = Math.min(bfsTime, time(bfs, mixes[m], others[m]));
+                balancedTime = Math.min(balancedTime, time(balanced, mixes[m], others[m]));
+            }
+            StdOut.printf("%-14s bfs: %8.0f ns/query   balanced: %8.0f ns/query\n", names[m], bfsTime, balancedTime);
+        }
+    }
+    
+    // n sets of between min and max random vertices
+    private static int[][] sets(int V, int n, int min, int max) {
+        int[][] sets = new int[n][];
+        for (int i = 0; i < n; i++) {
+            sets[i] = new int[min + StdRandom.uniformInt(max - min + 1)];
+            for (int j = 0; j < sets[i].length; j++) {
+                sets[i][j] = StdRandom.uniformInt(V);
+            }
+        }
+        return sets;
+    }
+    
+    private static double time(SAP sap, int[][] v, int[][] w) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < v.length; i++) {
+            checksum += sap.length(v[i], w[i]);
+        }
+        long nanos = System.nanoTime() - start;
+        if (checksum == Long.MIN_VALUE) {
+            StdOut.println(checksum);
+        }
+        return (double) nanos / v.length;
+    }
+}
@@ -0,0 +1,85 @@
+/******************************************************************************
+ *  Compilation:  javac ConcurrentQueriesBenchmark.java
+ *  Execution:    java ConcurrentQueriesBenchmark digraph.txt [queries] [threads]
+ *  Dependencies: SAP.java
+ *
+ *  Read a digraph from the file specified as command line argument and run
+ *  the same random SAP.length and SAP.ancestor queries from 1, 2, 4, ... up to
+ *  threads threads at once (by default, one per processor), on one SAP
+ *  without a cache and one with a cache of 256 results. Print the queries
+ *  answered per second by all the threads together.
+ *
+ *  % java ConcurrentQueriesBenchmark ../test-input/digraph-wordnet.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentQueriesBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        Digraph G = new Digraph(new In(args[0]));
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        SAP sap = new SAP(G);
+        SAP cached = new SAP(G, 256);
+        
+        int[] v = new int[queries];
+        int[] w = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            v[i] = StdRandom.uniformInt(G.V());
+            w[i] = StdRandom.uniformInt(G.V());
+        }
+        
+        // warm up so that the measured runs execute compiled code
+        for (int round = 0; round < 3; round++) {
+            run(sap, v, w, 1);
+            run(cached, v, w, 1);
+        }
+        
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            report("uncached", threads, queries, run(sap, v, w, threads));
+            report("cache 256", threads, queries, run(cached, v, w, threads));
+        }
+    }
+    
+    // seconds for threads threads to each run every query
+    private static double run(final SAP sap, final int[] v, final int[] w, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(new Callable<Long>() {
+                    public Long call() {
+                        long checksum = 0;
+                        for (int i = 0; i < v.length; i++) {
+                            checksum += sap.length(v[i], w[i]) + sap.ancestor(v[i], w[i]);
+                        }
+                        return checksum;
+                    }
+                });
+            }
+            
+            long start = System.nanoTime();
+            for (Future<Long> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            return (System.nanoTime() - start) / 1e9;
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    private static void report(String name, int threads, int queries, double seconds) {
+        StdOut.printf("%-10s %3d threads %12.0f queries/second\n", name, threads, 2.0 * threads * queries / seconds);
+    }
+}
@@ -0,0 +1,75 @@
+/******************************************************************************
+ *  Compilation:  javac MultiSourceBenchmark.java
+ *  Execution:    java MultiSourceBenchmark digraph.txt [batches] [sets]
+ *  Dependencies: SAP.java
+ *
+ *  Read a digraph from the file specified as command line argument and time
+ *  the lengths from a batch of random source sets to one random target set,
+ *  answered by one SAP.length query per set and by a single call to
+ *  SAP.lengths(int[][], int[]). digraph-wordnet.txt is the hypernyms.txt graph.
+ *
+ *  % java MultiSourceBenchmark ../test-input/digraph-wordnet.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class MultiSourceBenchmark {
+    
+    public static void main(String[] args) {
+        Digraph G = new Digraph(new In(args[0]));
+        int batches = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int sets = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        SAP sap = new SAP(G);
+        
+        int[][][] sources = new int[batches][sets][];
+        int[][] targets = new int[batches][];
+        for (int b = 0; b < batches; b++) {
+            for (int i = 0; i < sets; i++) {
+                sources[b][i] = randomSet(G.V());
+            }
+            targets[b] = randomSet(G.V());
+        }
+        
+        // the best of several rounds, so that the first ones warm the code up
+        double pairwise = Double.POSITIVE_INFINITY;
+        double batched = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < 5; round++) {
+            long checksum = 0;
+            long start = System.nanoTime();
+            for (int b = 0; b < batches; b++) {
+                for (int i = 0; i < sets; i++) {
+                    checksum += sap.length(sources[b][i], targets[b]);
+                }
+            }
+            pairwise = Math.min(pairwise, (double) (System.nanoTime() - start) / batches);
+            
+            long batchChecksum = 0;
+            start = System.nanoTime();
+            for (int b = 0; b < batches; b++) {
+                for (int length : sap.lengths(sources[b], targets[b])) {
+                    batchChecksum += length;
+                }
+            }
+            batched = Math.min(batched, (double) (System.nanoTime() - start) / batches);
+            if (checksum != batchChecksum) {
+                throw new IllegalStateException("lengths disagree with length");
+            }
+        }
+        StdOut.printf("%d sets against one target\n", sets);
+        StdOut.printf("length per set:   %8.0f ns/batch\n", pairwise);
+        StdOut.printf("lengths (MS-BFS): %8.0f ns/batch\n", batched);
+    }
+    
+    // between 1 and 3 random vertices, as the synsets of a noun
+    private static int[] randomSet(int V) {
+        int[] set = new int[1 + StdRandom.uniformInt(3)];
+        for (int i = 0; i < set.length; i++) {
+            set[i] = StdRandom.uniformInt(V);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,78 @@
+/******************************************************************************
+ *  Compilation:  javac NearestNounsBenchmark.java
+ *  Execution:    java NearestNounsBenchmark synsets.txt hypernyms.txt [queries]
+ *  Dependencies: WordNet.java
+ *
+ *  Time WordNet.nearest(noun, k) for random nouns and k = 1, 10, 100, 1000,
+ *  reporting the median and 99th percentile latency, against ranking every
+ *  noun by WordNet.distance() for a few of them, and check that both agree
+ *  on the distance of each of the k nearest nouns.
+ *
+ *  % java NearestNounsBenchmark ../test-input/synsets.txt ../test-input/hypernyms.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class NearestNounsBenchmark {
+    
+    public static void main(String[] args) {
+        WordNet wordnet = new WordNet(args[0], args[1]);
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        
+        List<String> nouns = new ArrayList<String>();
+        for (String noun : wordnet.nouns()) {
+            nouns.add(noun);
+        }
+        String[] sample = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            sample[i] = nouns.get(StdRandom.uniform(nouns.size()));
+        }
+        
+        int[] ks = { 1, 10, 100, 1000 };
+        for (int k : ks) {
+            // the best of several rounds, so that the first ones warm the code up
+            long[] best = null;
+            for (int round = 0; round < 5; round++) {
+                long[] nanos = new long[queries];
+                for (int i = 0; i < queries; i++) {
+                    long start = System.nanoTime();
+                    wordnet.nearest(sample[i], k);
+                    nanos[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(nanos);
+                if (best == null || nanos[queries / 2] < best[queries / 2]) {
+                    best = nanos;
+                }
+            }
+            StdOut.printf("nearest k = %4d: median %8.1f us, p99 %8.1f us\n",
+                          k, best[queries / 2] / 1e3, best[queries * 99 / 100] / 1e3);
+        }
+        
+        // ranking every noun takes one distance() per noun, so only a few queries
+        int k = 10;
+        double bruteForce = 0.0;
+        int checked = 3;
+        for (int i = 0; i < checked; i++) {
+            long start = System.nanoTime();
+            int[] distances = new int[nouns.size()];
+            for (int j = 0; j < nouns.size(); j++) {
+                distances[j] = nouns.get(j).equals(sample[i]) ? Integer.MAX_VALUE : wordnet.distance(sample[i], nouns.get(j));
+            }
+            Arrays.sort(distances);
+            bruteForce += System.nanoTime() - start;
+            
+            int j = 0;
+            for (String noun : wordnet.nearest(sample[i], k)) {
+                if (wordnet.distance(sample[i], noun) != distances[j++]) {
+                    throw new IllegalStateException("nearest disagrees with distance on " + sample[i]);
+                }
+            }
+        }
+        StdOut.printf("distance to every noun, k = %d: %.1f ms per query\n", k, bruteForce / checked / 1e6);
+    }
+}
@@ -0,0 +1,115 @@
+/******************************************************************************
+ *  Compilation:  javac NounIndexBenchmark.java
+ *  Execution:    java NounIndexBenchmark synsets.txt [lookups]
+ *  Dependencies: NounIndex.java ST.java SET.java
+ *
+ *  Read the nouns of the synsets file specified as command line argument into
+ *  the ST<String, SET<Integer>> WordNet used to keep and into a NounIndex, and
+ *  compare their heap footprint and the time to look up the synset ids of
+ *  random nouns (and of words that are not nouns) as an int[].
+ *
+ *  % java NounIndexBenchmark ../test-input/synsets.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.SET;
+import edu.princeton.cs.algs4.ST;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class NounIndexBenchmark {
+    
+    public static void main(String[] args) {
+        String[] lines = new In(args[0]).readAllLines();
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        
+        long before = usedHeap();
+        ST<String, SET<Integer>> st = new ST<String, SET<Integer>>();
+        for (String line : lines) {
+            String[] fields = line.split(",");
+            for (String noun : fields[1].split(" ")) {
+                SET<Integer> synsetIds = st.get(noun);
+                if (synsetIds == null) {
+                    synsetIds = new SET<Integer>();
+                    st.put(noun, synsetIds);
+                }
+                synsetIds.add(Integer.parseInt(fields[0]));
+            }
+        }
+        long stBytes = usedHeap() - before;
+        
+        before = usedHeap();
+        NounIndex.Builder builder = new NounIndex.Builder();
+        for (String line : lines) {
+            String[] fields = line.split(",");
+            for (String noun : fields[1].split(" ")) {
+                builder.add(noun, Integer.parseInt(fields[0]));
+            }
+        }
+        NounIndex index = builder.build();
+        builder = null;
+        long indexBytes = usedHeap() - before;
+        
+        // half the words are nouns, half are not
+        String[] nouns = index.sortedNouns();
+        String[] words = new String[lookups];
+        for (int i = 0; i < lookups; i++) {
+            String noun = nouns[StdRandom.uniformInt(nouns.length)];
+            words[i] = i % 2 == 0 ? noun : noun + "_";
+        }
+        
+        for (int round = 0; round < 3; round++) {
+            lookUp(st, words);
+            lookUp(index, words);
+        }
+        long start = System.nanoTime();
+        long checksum = lookUp(st, words);
+        report("ST<String, SET>", st.size(), stBytes, System.nanoTime() - start, lookups, checksum);
+        start = System.nanoTime();
+        checksum = lookUp(index, words);
+        report("NounIndex", index.size(), indexBytes, System.nanoTime() - start, lookups, checksum);
+    }
+    
+    // sum of the ids found, copied to an int[] as SAP takes them
+    private static long lookUp(ST<String, SET<Integer>> st, String[] words) {
+        long checksum = 0;
+        for (String word : words) {
+            SET<Integer> synsetIdSet = st.get(word);
+            if (synsetIdSet != null) {
+                int[] synsetIds = new int[synsetIdSet.size()];
+                int i = 0;
+                for (int synsetId : synsetIdSet) {
+                    synsetIds[i++] = synsetId;
+                }
+                checksum += synsetIds[0];
+            }
+        }
+        return checksum;
+    }
+    
+    private static long lookUp(NounIndex index, String[] words) {
+        long checksum = 0;
+        for (String word : words) {
+            int[] synsetIds = index.synsetIds(word);
+            if (synsetIds != null) {
+                checksum += synsetIds[0];
+            }
+        }
+        return checksum;
+    }
+    
+    // heap in use after a full collection; approximate, but enough to compare structures
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    private static void report(String name, int nouns, long bytes, long nanos, int lookups, long checksum) {
+        StdOut.printf("%-16s %7d nouns %6.1f MB %7.0f ns/lookup (checksum %d)\n",
+                      name, nouns, bytes / 1e6, (double) nanos / lookups, checksum);
+    }
+}
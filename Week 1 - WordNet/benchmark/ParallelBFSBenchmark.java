@@ -0,0 +1,85 @@
+/******************************************************************************
+ *  Compilation:  javac ParallelBFSBenchmark.java
+ *  Execution:    java ParallelBFSBenchmark hypernyms.txt [queries] [sourceSet]
+ *  Dependencies: SAP.java
+ *
+ *  Read the digraph of the hypernyms file specified as command line argument
+ *  and time random SAP.length queries answered by the lockstep and by the
+ *  frontier-balanced bfs, each with every level expanded on one thread, and
+ *  with the levels of at least SAP.PARALLEL_FRONTIER vertices expanded in
+ *  parallel. Each side of a query has up to sourceSet random vertices: from a
+ *  single vertex, the levels of hypernyms200K.txt and hypernyms300K.txt stay
+ *  in the hundreds, so it takes source sets of tens of thousands of vertices
+ *  to pass the threshold.
+ *
+ *  % java ParallelBFSBenchmark ../test-input/hypernyms300K.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class ParallelBFSBenchmark {
+    
+    public static void main(String[] args) {
+        String[] lines = new In(args[0]).readAllLines();
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int sourceSet = args.length > 2 ? Integer.parseInt(args[2]) : 60000;
+        
+        Digraph G = new Digraph(lines.length);
+        for (String line : lines) {
+            String[] fields = line.split(",");
+            for (int i = 1; i < fields.length; i++) {
+                G.addEdge(Integer.parseInt(fields[0]), Integer.parseInt(fields[i]));
+            }
+        }
+        
+        int[][] v = sets(G.V(), queries, sourceSet);
+        int[][] w = sets(G.V(), queries, sourceSet);
+        
+        StdOut.printf("%d threads\n", Runtime.getRuntime().availableProcessors());
+        SAP.Strategy[] strategies = { SAP.Strategy.BFS, SAP.Strategy.BALANCED_BFS };
+        for (SAP.Strategy strategy : strategies) {
+            SAP sequential = new SAP(G, strategy, 0);
+            sequential.parallelFrontier(Integer.MAX_VALUE);
+            SAP parallel = new SAP(G, strategy, 0);
+            
+            // the best of several rounds, so that the first ones warm the code up
+            double sequentialTime = Double.POSITIVE_INFINITY;
+            double parallelTime = Double.POSITIVE_INFINITY;
+            for (int round = 0; round < 5; round++) {
+                sequentialTime = Math.min(sequentialTime, time(sequential, v, w));
+                parallelTime = Math.min(parallelTime, time(parallel, v, w));
+            }
+            StdOut.printf("%-12s sequential levels: %8.1f us/query\n", strategy, sequentialTime / 1000);
+            StdOut.printf("%-12s parallel levels:   %8.1f us/query\n", strategy, parallelTime / 1000);
+        }
+    }
+    
+    // n sets of between 1 and max random vertices
+    private static int[][] sets(int V, int n, int max) {
+        int[][] sets = new int[n][];
+        for (int i = 0; i < n; i++) {
+            sets[i] = new int[1 + StdRandom.uniformInt(max)];
+            for (int j = 0; j < sets[i].length; j++) {
+                sets[i][j] = StdRandom.uniformInt(V);
+            }
+        }
+        return sets;
+    }
+    
+    private static double time(SAP sap, int[][] v, int[][] w) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < v.length; i++) {
+            checksum += sap.length(v[i], w[i]);
+        }
+        long nanos = System.nanoTime() - start;
+        if (checksum == Long.MIN_VALUE) {
+            StdOut.println(checksum);
+        }
+        return (double) nanos / v.length;
+    }
+}
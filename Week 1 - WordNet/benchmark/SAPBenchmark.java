@@ -0,0 +1,87 @@
+/******************************************************************************
+ *  Compilation:  javac SAPBenchmark.java
+ *  Execution:    java SAPBenchmark digraph.txt [queries]
+ *  Dependencies: SAP.java
+ *
+ *  Read a digraph from the file specified as command line argument and time
+ *  random single-vertex and set-vertex SAP.length queries. Print the average
+ *  time and the number of bytes allocated per query.
+ *
+ *  % java SAPBenchmark ../test-input/digraph-wordnet.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import java.lang.management.ManagementFactory;
+
+public class SAPBenchmark {
+    private static final int SET_SIZE = 5;
+    
+    public static void main(String[] args) {
+        Digraph G = new Digraph(new In(args[0]));
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        SAP sap = new SAP(G);
+        
+        int[] v = new int[queries];
+        int[] w = new int[queries];
+        int[][] vSets = new int[queries][SET_SIZE];
+        int[][] wSets = new int[queries][SET_SIZE];
+        for (int i = 0; i < queries; i++) {
+            v[i] = StdRandom.uniformInt(G.V());
+            w[i] = StdRandom.uniformInt(G.V());
+            for (int j = 0; j < SET_SIZE; j++) {
+                vSets[i][j] = StdRandom.uniformInt(G.V());
+                wSets[i][j] = StdRandom.uniformInt(G.V());
+            }
+        }
+        
+        // warm up so that the measured loops run compiled code
+        for (int round = 0; round < 3; round++) {
+            single(sap, v, w);
+            sets(sap, vSets, wSets);
+        }
+        
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        long checksum = single(sap, v, w);
+        report("length(int, int)", queries, System.nanoTime() - start, allocatedBytes() - bytes, checksum);
+        
+        bytes = allocatedBytes();
+        start = System.nanoTime();
+        checksum = sets(sap, vSets, wSets);
+        report("length(int[], int[])", queries, System.nanoTime() - start, allocatedBytes() - bytes, checksum);
+    }
+    
+    private static long single(SAP sap, int[] v, int[] w) {
+        long checksum = 0;
+        for (int i = 0; i < v.length; i++) {
+            checksum += sap.length(v[i], w[i]);
+        }
+        return checksum;
+    }
+    
+    private static long sets(SAP sap, int[][] v, int[][] w) {
+        long checksum = 0;
+        for (int i = 0; i < v.length; i++) {
+            checksum += sap.length(v[i], w[i]);
+        }
+        return checksum;
+    }
+    
+    // bytes allocated so far by the current thread; -1 if the JVM cannot tell
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+    
+    private static void report(String name, int queries, long nanos, long bytes, long checksum) {
+        StdOut.printf("%-22s %8.0f ns/query %8.1f bytes/query (checksum %d)\n",
+                      name, (double) nanos / queries, (double) bytes / queries, checksum);
+    }
+}
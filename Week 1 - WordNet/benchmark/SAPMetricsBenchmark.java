@@ -0,0 +1,72 @@
+/******************************************************************************
+ *  Compilation:  javac SAPMetricsBenchmark.java
+ *  Execution:    java SAPMetricsBenchmark digraph.txt [queries]
+ *  Dependencies: SAP.java SAPMetrics.java
+ *
+ *  Read a digraph from the file specified as command line argument and time
+ *  random SAP.length queries with the metrics off and on, for the lockstep and
+ *  the frontier-balanced bfs, then print the metrics recorded: the work per
+ *  search and the latency percentiles. digraph-wordnet.txt is the hypernyms.txt
+ *  graph.
+ *
+ *  % java SAPMetricsBenchmark ../test-input/digraph-wordnet.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class SAPMetricsBenchmark {
+    
+    public static void main(String[] args) {
+        Digraph G = new Digraph(new In(args[0]));
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        
+        int[] v = new int[queries];
+        int[] w = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            v[i] = StdRandom.uniformInt(G.V());
+            w[i] = StdRandom.uniformInt(G.V());
+        }
+        
+        SAP.Strategy[] strategies = { SAP.Strategy.BFS, SAP.Strategy.BALANCED_BFS };
+        for (SAP.Strategy strategy : strategies) {
+            SAP off = new SAP(G, strategy, 0);
+            SAP on = new SAP(G, strategy, 0);
+            SAPMetrics metrics = on.enableMetrics();
+            
+            // the best of several rounds, so that the first ones warm the code up
+            double offTime = Double.POSITIVE_INFINITY;
+            double onTime = Double.POSITIVE_INFINITY;
+            for (int round = 0; round < 5; round++) {
+                offTime = Math.min(offTime, time(off, v, w));
+                onTime = Math.min(onTime, time(on, v, w));
+            }
+            StdOut.printf("%-13s off: %6.0f ns/query   on: %6.0f ns/query\n", strategy, offTime, onTime);
+            
+            SAPMetrics.Snapshot snapshot = metrics.snapshot();
+            double searches = snapshot.searches();
+            StdOut.printf("              per search: %.1f expanded, %.1f edges, %.1f pruned\n",
+                          snapshot.verticesExpanded() / searches, snapshot.edgesScanned() / searches,
+                          snapshot.verticesPruned() / searches);
+            StdOut.printf("              latency: p50 %d ns, p99 %d ns, max %d ns\n",
+                          snapshot.latencyPercentile(50.0), snapshot.latencyPercentile(99.0),
+                          snapshot.latencyPercentile(100.0));
+        }
+    }
+    
+    private static double time(SAP sap, int[] v, int[] w) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < v.length; i++) {
+            checksum += sap.length(v[i], w[i]);
+        }
+        long nanos = System.nanoTime() - start;
+        if (checksum == Long.MIN_VALUE) {
+            StdOut.println(checksum);
+        }
+        return (double) nanos / v.length;
+    }
+}
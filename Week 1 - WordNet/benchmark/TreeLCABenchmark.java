@@ -0,0 +1,80 @@
+/******************************************************************************
+ *  Compilation:  javac TreeLCABenchmark.java
+ *  Execution:    java TreeLCABenchmark hypernyms.txt [queries]
+ *  Dependencies: SAP.java
+ *
+ *  Build the tree made of the first hypernym of every synset in the hypernyms
+ *  file specified as command line argument and time random SAP.length queries
+ *  on it, answered through lowest common ancestors, as SAP does whenever its
+ *  digraph is a forest, against the same queries on the tree with one more
+ *  edge (from the last synset to the root), which is no longer a tree and so
+ *  is searched by the lockstep bfs.
+ *
+ *  % java TreeLCABenchmark ../test-input/hypernyms.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.Stopwatch;
+
+public class TreeLCABenchmark {
+    
+    public static void main(String[] args) {
+        String[] lines = new In(args[0]).readAllLines();
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        
+        Digraph tree = new Digraph(lines.length);
+        Digraph dag = new Digraph(lines.length);
+        int root = -1;
+        for (String line : lines) {
+            String[] fields = line.split(",");
+            int v = Integer.parseInt(fields[0]);
+            if (fields.length > 1) {
+                tree.addEdge(v, Integer.parseInt(fields[1]));
+                dag.addEdge(v, Integer.parseInt(fields[1]));
+            } else {
+                root = v;
+            }
+        }
+        int last = lines.length - 1 != root ? lines.length - 1 : 0;
+        dag.addEdge(last, root);
+        
+        Stopwatch build = new Stopwatch();
+        SAP lca = new SAP(tree);
+        StdOut.printf("lca index built in %.3f seconds\n", build.elapsedTime());
+        SAP bfs = new SAP(dag);
+        
+        int[] v = new int[queries];
+        int[] w = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            v[i] = StdRandom.uniformInt(lines.length);
+            w[i] = StdRandom.uniformInt(lines.length);
+        }
+        
+        // the best of several rounds, so that the first ones warm the code up
+        double lcaTime = Double.POSITIVE_INFINITY;
+        double bfsTime = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < 5; round++) {
+            lcaTime = Math.min(lcaTime, time(lca, v, w));
+            bfsTime = Math.min(bfsTime, time(bfs, v, w));
+        }
+        StdOut.printf("tree, lca: %8.0f ns/query\n", lcaTime);
+        StdOut.printf("dag, bfs:  %8.0f ns/query\n", bfsTime);
+    }
+    
+    private static double time(SAP sap, int[] v, int[] w) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < v.length; i++) {
+            checksum += sap.length(v[i], w[i]);
+        }
+        long nanos = System.nanoTime() - start;
+        if (checksum == Long.MIN_VALUE) {
+            StdOut.println(checksum);
+        }
+        return (double) nanos / v.length;
+    }
+}
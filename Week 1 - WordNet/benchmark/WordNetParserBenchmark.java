@@ -0,0 +1,93 @@
+/******************************************************************************
+ *  Compilation:  javac WordNetParserBenchmark.java
+ *  Execution:    java WordNetParserBenchmark synsets.txt hypernyms.txt [runs]
+ *  Dependencies: WordNetParser.java In.java
+ *
+ *  Time reading the synsets and hypernyms files line by line through In, with
+ *  split and Integer.parseInt as WordNet used to, against WordNetParser.
+ *
+ *  % java WordNetParserBenchmark ../test-input/synsets.txt ../test-input/hypernyms300K.txt
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+import java.util.Arrays;
+
+public class WordNetParserBenchmark {
+    
+    public static void main(String[] args) {
+        String synsetsFile = args[0];
+        String hypernymsFile = args[1];
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int V = new In(synsetsFile).readAllLines().length;
+        
+        for (int round = 0; round < 2; round++) {
+            byLine(synsetsFile, hypernymsFile, V);
+            parser(synsetsFile, hypernymsFile, V);
+        }
+        
+        double byLineTime = 0.0;
+        double parserTime = 0.0;
+        for (int run = 0; run < runs; run++) {
+            Stopwatch timer = new Stopwatch();
+            long expected = byLine(synsetsFile, hypernymsFile, V);
+            byLineTime += timer.elapsedTime();
+            
+            timer = new Stopwatch();
+            long checksum = parser(synsetsFile, hypernymsFile, V);
+            parserTime += timer.elapsedTime();
+            if (checksum != expected) {
+                throw new IllegalStateException("parsers disagree");
+            }
+        }
+        StdOut.printf("In, split, parseInt: %.3f seconds\n", byLineTime / runs);
+        StdOut.printf("WordNetParser:       %.3f seconds (%d-byte chunks, %d threads)\n",
+                      parserTime / runs, WordNetParser.CHUNK, Runtime.getRuntime().availableProcessors());
+    }
+    
+    private static long byLine(String synsetsFile, String hypernymsFile, int V) {
+        In in = new In(synsetsFile);
+        SynsetStore.Builder synsets = new SynsetStore.Builder();
+        NounIndex.Builder nouns = new NounIndex.Builder();
+        while (in.hasNextLine()) {
+            String[] fields = in.readLine().split(",");
+            int synsetId = Integer.parseInt(fields[0]);
+            for (String noun : fields[1].split(" ")) {
+                nouns.add(noun, synsetId);
+            }
+            synsets.add(synsetId, fields[1]);
+        }
+        
+        in = new In(hypernymsFile);
+        int[] from = new int[V];
+        int[] to = new int[V];
+        int edgeCount = 0;
+        while (in.hasNextLine()) {
+            String[] fields = in.readLine().split(",");
+            int synsetId = Integer.parseInt(fields[0]);
+            for (int i = 1; i < fields.length; i++) {
+                if (edgeCount == from.length) {
+                    from = Arrays.copyOf(from, 2 * edgeCount + 1);
+                    to = Arrays.copyOf(to, 2 * edgeCount + 1);
+                }
+                from[edgeCount] = synsetId;
+                to[edgeCount] = Integer.parseInt(fields[i]);
+                edgeCount++;
+            }
+        }
+        return checksum(synsets.build(), nouns.build(), new CompactDigraph(V, from, to, edgeCount));
+    }
+    
+    private static long parser(String synsetsFile, String hypernymsFile, int V) {
+        SynsetStore.Builder synsets = new SynsetStore.Builder();
+        NounIndex.Builder nouns = new NounIndex.Builder();
+        WordNetParser.parseSynsets(synsetsFile, synsets, nouns);
+        return checksum(synsets.build(), nouns.build(), WordNetParser.parseHypernyms(hypernymsFile, V));
+    }
+    
+    private static long checksum(SynsetStore synsets, NounIndex nouns, CompactDigraph G) {
+        return 31L * (31L * synsets.byteSize() + Arrays.hashCode(nouns.ids())) + Arrays.hashCode(G.targets());
+    }
+}
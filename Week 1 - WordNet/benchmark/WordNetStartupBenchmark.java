@@ -0,0 +1,58 @@
+/******************************************************************************
+ *  Compilation:  javac WordNetStartupBenchmark.java
+ *  Execution:    java WordNetStartupBenchmark synsets.txt hypernyms.txt snapshot [runs]
+ *  Dependencies: WordNet.java WordNetSnapshot.java
+ *
+ *  Time building a WordNet from the synsets and hypernyms text files against
+ *  loading it from a binary snapshot written by WordNet.save(), and check that
+ *  both answer the same queries.
+ *
+ *  % java WordNetStartupBenchmark ../test-input/synsets.txt ../test-input/hypernyms.txt /tmp/wordnet.snapshot
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+import java.io.File;
+
+public class WordNetStartupBenchmark {
+    
+    public static void main(String[] args) {
+        String synsets = args[0];
+        String hypernyms = args[1];
+        String snapshot = args[2];
+        int runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        
+        WordNet parsed = new WordNet(synsets, hypernyms);
+        parsed.save(snapshot);
+        StdOut.printf("snapshot: %d bytes\n", new File(snapshot).length());
+        
+        double textTime = 0.0;
+        double snapshotTime = 0.0;
+        WordNet loaded = null;
+        for (int run = 0; run < runs; run++) {
+            Stopwatch text = new Stopwatch();
+            parsed = new WordNet(synsets, hypernyms);
+            textTime += text.elapsedTime();
+            
+            Stopwatch binary = new Stopwatch();
+            loaded = WordNet.load(snapshot);
+            snapshotTime += binary.elapsedTime();
+        }
+        StdOut.printf("text files: %.3f seconds\n", textTime / runs);
+        StdOut.printf("snapshot:   %.3f seconds\n", snapshotTime / runs);
+        
+        int checked = 0;
+        String previous = null;
+        for (String noun : parsed.nouns()) {
+            if (previous != null && loaded.distance(previous, noun) != parsed.distance(previous, noun)) {
+                throw new IllegalStateException("snapshot disagrees on " + previous + ", " + noun);
+            }
+            previous = noun;
+            if (++checked == 1000) {
+                break;
+            }
+        }
+        StdOut.println("checked " + checked + " queries");
+    }
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import wordnet.WordNet;
+
+// the synsets*-subgraph.txt and hypernyms*-subgraph.txt inputs, found in the directory
+// named by the wordnet.input system property (../test-input by default)
+final class Inputs {
+    private Inputs() { }
+    
+    static String synsets(int size) {
+        return directory() + "/synsets" + size + "-subgraph.txt";
+    }
+    
+    static String hypernyms(int size) {
+        return directory() + "/hypernyms" + size + "-subgraph.txt";
+    }
+    
+    // the hypernym digraph of the subgraph: synset id followed by the ids of its hypernyms
+    static Digraph digraph(int size) {
+        String[] lines = new In(hypernyms(size)).readAllLines();
+        Digraph G = new Digraph(lines.length);
+        for (String line : lines) {
+            String[] fields = line.split(",");
+            for (int i = 1; i < fields.length; i++) {
+                G.addEdge(Integer.parseInt(fields[0]), Integer.parseInt(fields[i]));
+            }
+        }
+        return G;
+    }
+    
+    // count random vertices of a digraph on V vertices, from a fixed seed
+    static int[] vertices(Random random, int V, int count) {
+        int[] vertices = new int[count];
+        for (int i = 0; i < count; i++) {
+            vertices[i] = random.nextInt(V);
+        }
+        return vertices;
+    }
+    
+    // count random nouns of wordnet, from a fixed seed
+    static String[] nouns(Random random, WordNet wordnet, int count) {
+        List<String> all = new ArrayList<String>();
+        for (String noun : wordnet.nouns()) {
+            all.add(noun);
+        }
+        String[] nouns = new String[count];
+        for (int i = 0; i < count; i++) {
+            nouns[i] = all.get(random.nextInt(all.size()));
+        }
+        return nouns;
+    }
+    
+    private static String directory() {
+        return System.getProperty("wordnet.input", "../test-input");
+    }
+}
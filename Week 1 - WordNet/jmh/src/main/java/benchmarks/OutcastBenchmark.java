@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import wordnet.Outcast;
+import wordnet.WordNet;
+
+// Outcast.outcast of lists of random nouns of each subgraph, as long as the
+// outcast*.txt lists (which need the full WordNet)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutcastBenchmark {
+    private static final int LISTS = 256;   // a power of two, cycled through
+    private static final int LIST_SIZE = 8;
+    
+    @Param({ "100", "500", "1000", "5000", "10000" })
+    int size;
+    
+    private Outcast outcast;
+    private String[][] lists;
+    private int next;
+    
+    @Setup
+    public void setUp() {
+        WordNet wordnet = new WordNet(Inputs.synsets(size), Inputs.hypernyms(size));
+        outcast = new Outcast(wordnet);
+        
+        Random random = new Random(size);
+        lists = new String[LISTS][];
+        for (int i = 0; i < LISTS; i++) {
+            lists[i] = Inputs.nouns(random, wordnet, LIST_SIZE);
+        }
+    }
+    
+    @Benchmark
+    public String outcast() {
+        return outcast.outcast(lists[next++ & (LISTS - 1)]);
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import edu.princeton.cs.algs4.Digraph;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import wordnet.SAP;
+
+// SAP.length between random vertices and between random sets of vertices of the
+// hypernym digraph of each subgraph
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SAPBenchmark {
+    private static final int QUERIES = 1024;   // a power of two, cycled through
+    private static final int SET_SIZE = 5;
+    
+    @Param({ "100", "500", "1000", "5000", "10000" })
+    int size;
+    
+    private SAP sap;
+    private int[] v;
+    private int[] w;
+    private int[][] vSets;
+    private int[][] wSets;
+    private int next;
+    
+    @Setup
+    public void setUp() {
+        Digraph G = Inputs.digraph(size);
+        sap = new SAP(G);
+        
+        Random random = new Random(size);
+        v = Inputs.vertices(random, G.V(), QUERIES);
+        w = Inputs.vertices(random, G.V(), QUERIES);
+        vSets = new int[QUERIES][];
+        wSets = new int[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            vSets[i] = Inputs.vertices(random, G.V(), SET_SIZE);
+            wSets[i] = Inputs.vertices(random, G.V(), SET_SIZE);
+        }
+    }
+    
+    @Benchmark
+    public int lengthSingleSource() {
+        int i = next++ & (QUERIES - 1);
+        return sap.length(v[i], w[i]);
+    }
+    
+    @Benchmark
+    public int lengthMultipleSources() {
+        int i = next++ & (QUERIES - 1);
+        return sap.length(vSets[i], wSets[i]);
+    }
+}
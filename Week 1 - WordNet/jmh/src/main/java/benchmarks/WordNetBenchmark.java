@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import wordnet.WordNet;
+
+// building a WordNet from each subgraph, and WordNet.distance between its random nouns
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WordNetBenchmark {
+    private static final int QUERIES = 1024;   // a power of two, cycled through
+    
+    @Param({ "100", "500", "1000", "5000", "10000" })
+    int size;
+    
+    private String synsets;
+    private String hypernyms;
+    private WordNet wordnet;
+    private String[] nounsA;
+    private String[] nounsB;
+    private int next;
+    
+    @Setup
+    public void setUp() {
+        synsets = Inputs.synsets(size);
+        hypernyms = Inputs.hypernyms(size);
+        wordnet = new WordNet(synsets, hypernyms);
+        
+        Random random = new Random(size);
+        nounsA = Inputs.nouns(random, wordnet, QUERIES);
+        nounsB = Inputs.nouns(random, wordnet, QUERIES);
+    }
+    
+    @Benchmark
+    public WordNet construct() {
+        return new WordNet(synsets, hypernyms);
+    }
+    
+    @Benchmark
+    public int distance() {
+        int i = next++ & (QUERIES - 1);
+        return wordnet.distance(nounsA[i], nounsB[i]);
+    }
+}
@@ -0,0 +1,331 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// distance labels for shortest ancestral path queries on a DAG: the label of v lists
+// every ancestor a of v (v included) with the length of the shortest v->a path, sorted
+// by a. The shortest ancestral path between v and w goes through the common entry
+// of their labels with the smallest sum of distances, so a query is a merge of two
+// short sorted lists instead of a search of the digraph.
+class AncestorIndex {
+    private final CompactDigraph g;
+    private final IntLists labels;   // label of v = (ancestor, distance) pairs, sorted by ancestor
+    
+    // builds the labels; order must be a topological order of G
+    AncestorIndex(CompactDigraph G, int[] order) {
+        if (order == null || order.length != G.V()) {
+            throw new IllegalArgumentException("ancestor index requires a topological order of a DAG.");
+        }
+        
+        g = G;
+        int V = G.V();
+        int[] heads = G.heads();
+        
+        // labels of all parents of v are complete before v is labelled
+        int[] start = new int[V];
+        int[] length = new int[V];
+        int[] allHubs = new int[Math.max(16, 2 * V)];
+        int[] allDists = new int[allHubs.length];
+        int size = 0;
+        
+        int[] best = new int[V];        // best[a] = shortest v->a path seen so far, if seen[a] == v + 1
+        int[] seen = new int[V];
+        int[] found = new int[V];
+        for (int i = V - 1; i >= 0; i--) {
+            int v = order[i];
+            int count = 0;
+            seen[v] = v + 1;
+            best[v] = 0;
+            found[count++] = v;
+            for (int e = G.start(v); e < G.end(v); e++) {
+                int p = heads[e];
+                for (int j = start[p]; j < start[p] + length[p]; j++) {
+                    int a = allHubs[j];
+                    if (seen[a] != v + 1) {
+                        seen[a] = v + 1;
+                        best[a] = allDists[j] + 1;
+                        found[count++] = a;
+                    } else if (allDists[j] + 1 < best[a]) {
+                        best[a] = allDists[j] + 1;
+                    }
+                }
+            }
+            Arrays.sort(found, 0, count);
+            
+            if (size + count > allHubs.length) {
+                long capacity = Math.max(2L * allHubs.length, (long) size + count);
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException("digraph has too many ancestor pairs to index.");
+                }
+                allHubs = Arrays.copyOf(allHubs, (int) capacity);
+                allDists = Arrays.copyOf(allDists, (int) capacity);
+            }
+            start[v] = size;
+            length[v] = count;
+            for (int j = 0; j < count; j++) {
+                allHubs[size] = found[j];
+                allDists[size] = best[found[j]];
+                size++;
+            }
+        }
+        
+        // lay the labels out by vertex, each entry next to its distance
+        int[] labelStart = new int[V + 1];
+        int[] pairs = new int[2 * size];
+        int k = 0;
+        for (int v = 0; v < V; v++) {
+            labelStart[v] = k;
+            for (int j = start[v]; j < start[v] + length[v]; j++) {
+                pairs[k++] = allHubs[j];
+                pairs[k++] = allDists[j];
+            }
+        }
+        labelStart[V] = k;
+        labels = new IntLists(labelStart, pairs);
+    }
+    
+    // index of G, a changed copy of the digraph of previous, relabelling only the
+    // vertices in affected, given in reverse topological order (hypernyms before
+    // hyponyms); every vertex of G not in previous must be in affected, in increasing
+    // order. The labels of the other vertices are shared with previous, not copied.
+    AncestorIndex(CompactDigraph G, AncestorIndex previous, int[] affected) {
+        g = G;
+        int[] heads = G.heads();
+        int[] previousLabels = previous.labels.data();
+        
+        Map<Integer, long[]> newLabels = new HashMap<Integer, long[]>();  // as built by merge()
+        int[][] pairs = new int[affected.length][];
+        for (int j = 0; j < affected.length; j++) {
+            int v = affected[j];
+            int n = 1;
+            for (int e = G.start(v); e < G.end(v); e++) {
+                long[] label = newLabels.get(heads[e]);
+                n += label != null ? label.length : previous.labelLength(heads[e]);
+            }
+            
+            long[] entries = new long[n];
+            int k = 0;
+            entries[k++] = (long) v << 32;
+            for (int e = G.start(v); e < G.end(v); e++) {
+                int p = heads[e];
+                long[] label = newLabels.get(p);
+                if (label != null) {
+                    for (long entry : label) {
+                        entries[k++] = entry + 1;
+                    }
+                } else {
+                    for (int i = previous.labels.start(p); i < previous.labels.end(p); i += 2) {
+                        entries[k++] = ((long) previousLabels[i] << 32) | (previousLabels[i + 1] + 1);
+                    }
+                }
+            }
+            long[] label = shortestPerAncestor(entries);
+            newLabels.put(v, label);
+            
+            pairs[j] = new int[2 * label.length];
+            for (int i = 0; i < label.length; i++) {
+                pairs[j][2 * i] = (int) (label[i] >>> 32);
+                pairs[j][2 * i + 1] = (int) label[i];
+            }
+        }
+        labels = previous.labels.with(affected, pairs, affected.length);
+    }
+    
+    // total number of label entries
+    int size() {
+        return labels.total() / 2;
+    }
+    
+    // length of the shortest v->a path; -1 if a is not an ancestor of v
+    int distance(int v, int a) {
+        int[] data = labels.data();
+        int lo = labels.start(v) / 2;
+        int hi = labels.end(v) / 2 - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int hub = data[2 * mid];
+            if (hub < a) {
+                lo = mid + 1;
+            } else if (hub > a) {
+                hi = mid - 1;
+            } else {
+                return data[2 * mid + 1];
+            }
+        }
+        return -1;
+    }
+    
+    // length and ancestor of the shortest ancestral path between v and w, packed by pack()
+    long search(int v, int w) {
+        int[] data = labels.data();
+        int i = labels.start(v);
+        int j = labels.start(w);
+        int iEnd = labels.end(v);
+        int jEnd = labels.end(w);
+        
+        int distance = -1;
+        int ancestor = -1;
+        while (i < iEnd && j < jEnd) {
+            if (data[i] < data[j]) {
+                i += 2;
+            } else if (data[i] > data[j]) {
+                j += 2;
+            } else {
+                int d = data[i + 1] + data[j + 1];
+                if (d < distance || distance == -1) {
+                    distance = d;
+                    ancestor = data[i];
+                }
+                i += 2;
+                j += 2;
+            }
+        }
+        return pack(distance, ancestor);
+    }
+    
+    // length and ancestor of the shortest ancestral path between any vertex in v
+    // and any vertex in w, packed by pack()
+    long search(int[] v, int[] w) {
+        return search(v, 0, v.length, w, 0, w.length);
+    }
+    
+    // search(int[], int[]) between v[vFrom .. vTo - 1] and w[wFrom .. wTo - 1], without
+    // copying them
+    long search(int[] v, int vFrom, int vTo, int[] w, int wFrom, int wTo) {
+        if (vTo - vFrom == 1 && wTo - wFrom == 1) {
+            return search(v[vFrom], w[wFrom]);
+        }
+        
+        return meet(merge(v, vFrom, vTo), merge(w, wFrom, wTo));
+    }
+    
+    // length and ancestor, packed by pack(), of the shortest ancestral path through the
+    // common entries of two labels in the form returned by merge()
+    static long meet(long[] vLabel, long[] wLabel) {
+        int i = 0;
+        int j = 0;
+        int distance = -1;
+        int ancestor = -1;
+        while (i < vLabel.length && j < wLabel.length) {
+            int a = (int) (vLabel[i] >>> 32);
+            int b = (int) (wLabel[j] >>> 32);
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                int d = (int) vLabel[i] + (int) wLabel[j];
+                if (d < distance || distance == -1) {
+                    distance = d;
+                    ancestor = a;
+                }
+                i++;
+                j++;
+            }
+        }
+        return pack(distance, ancestor);
+    }
+    
+    // shortest ancestral path between any vertex in v and any vertex in w
+    AncestralPath ancestralPath(int[] v, int[] w) {
+        long result = search(v, w);
+        int distance = lengthOf(result);
+        int ancestor = ancestorOf(result);
+        if (ancestor == -1) {
+            return new AncestralPath(-1, -1, new int[0]);
+        }
+        
+        int[] path = new int[distance + 1];
+        int[] up = pathToAncestor(v, ancestor);
+        int[] down = pathToAncestor(w, ancestor);
+        System.arraycopy(up, 0, path, 0, up.length);
+        for (int i = 0; i < down.length - 1; i++) {
+            path[up.length + i] = down[down.length - 2 - i];
+        }
+        return new AncestralPath(distance, ancestor, path);
+    }
+    
+    static long pack(int distance, int ancestor) {
+        return ((long) distance << 32) | (ancestor & 0xFFFFFFFFL);
+    }
+    
+    static int lengthOf(long result) {
+        return (int) (result >> 32);
+    }
+    
+    static int ancestorOf(long result) {
+        return (int) result;
+    }
+    
+    // union of the labels of the vertices in sources, keeping the shortest distance to each
+    // ancestor; entries are (ancestor << 32 | distance), sorted by ancestor
+    long[] merge(int[] sources) {
+        return merge(sources, 0, sources.length);
+    }
+    
+    // merge(int[]) of sources[from .. to - 1]
+    long[] merge(int[] sources, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            n += labelLength(sources[i]);
+        }
+        
+        int[] data = labels.data();
+        long[] entries = new long[n];
+        int k = 0;
+        for (int j = from; j < to; j++) {
+            int s = sources[j];
+            for (int i = labels.start(s); i < labels.end(s); i += 2) {
+                entries[k++] = ((long) data[i] << 32) | data[i + 1];
+            }
+        }
+        return shortestPerAncestor(entries);
+    }
+    
+    // number of entries in the label of v
+    private int labelLength(int v) {
+        return labels.length(v) / 2;
+    }
+    
+    // sorts (ancestor << 32 | distance) entries, keeping the shortest distance to each ancestor
+    private static long[] shortestPerAncestor(long[] entries) {
+        Arrays.sort(entries);
+        
+        // the first entry of each ancestor has the smallest distance
+        int k = 0;
+        for (int i = 0; i < entries.length; i++) {
+            if (k == 0 || (entries[k - 1] >>> 32) != (entries[i] >>> 32)) {
+                entries[k++] = entries[i];
+            }
+        }
+        return Arrays.copyOf(entries, k);
+    }
+    
+    // shortest path from the closest source to ancestor, walking parents one level closer each step
+    private int[] pathToAncestor(int[] sources, int ancestor) {
+        int source = -1;
+        int d = -1;
+        for (int s : sources) {
+            int ds = distance(s, ancestor);
+            if (ds != -1 && (ds < d || d == -1)) {
+                d = ds;
+                source = s;
+            }
+        }
+        
+        int[] heads = g.heads();
+        int[] path = new int[d + 1];
+        int x = source;
+        path[0] = x;
+        for (int i = 1; i <= d; i++) {
+            for (int e = g.start(x); e < g.end(x); e++) {
+                if (distance(heads[e], ancestor) == d - i) {
+                    x = heads[e];
+                    break;
+                }
+            }
+            path[i] = x;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,52 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// immutable result of a shortest ancestral path query: its length, the common
+// ancestor and the vertices of the path itself
+public final class AncestralPath {
+    private final int length;          // length of the path; -1 if no such path
+    private final int ancestor;        // common ancestor on the path; -1 if no such path
+    private final List<Integer> path;  // source in V -> ... -> ancestor <- ... <- source in W
+    
+    AncestralPath(int length, int ancestor, int[] vertices) {
+        this.length = length;
+        this.ancestor = ancestor;
+        
+        List<Integer> list = new ArrayList<Integer>(vertices.length);
+        for (int v : vertices) {
+            list.add(v);
+        }
+        this.path = Collections.unmodifiableList(list);
+    }
+    
+    // length of the shortest ancestral path; -1 if no such path
+    public int length() {
+        return length;
+    }
+    
+    // common ancestor that participates in the shortest ancestral path; -1 if no such path
+    public int ancestor() {
+        return ancestor;
+    }
+    
+    // vertices of the path, from a vertex in V up to the ancestor and down to a vertex in W;
+    // empty if no such path
+    public Iterable<Integer> path() {
+        return path;
+    }
+    
+    // the same path walked from W to V
+    AncestralPath reverse() {
+        int[] vertices = new int[path.size()];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = path.get(vertices.length - 1 - i);
+        }
+        return new AncestralPath(length, ancestor, vertices);
+    }
+    
+    @Override
+    public String toString() {
+        return "length = " + length + ", ancestor = " + ancestor + ", path = " + path;
+    }
+}
@@ -0,0 +1,243 @@
+import edu.princeton.cs.algs4.Digraph;
+import java.util.Arrays;
+
+// immutable digraph in compressed sparse row form: the heads of the edges
+// leaving v are heads()[start(v)] .. heads()[end(v) - 1]. A changed copy shares the
+// heads of the vertices it does not change (see IntLists), so a change costs the edges
+// of the changed vertex rather than a copy of the whole digraph.
+class CompactDigraph {
+    private final IntLists adj;    // adj list v = heads of the edges leaving v
+    
+    // copy of G keeping the order of G.adj(v)
+    CompactDigraph(Digraph G) {
+        int V = G.V();
+        int[] offsets = new int[V + 1];
+        int[] targets = new int[G.E()];
+        
+        int e = 0;
+        for (int v = 0; v < V; v++) {
+            offsets[v] = e;
+            for (int w : G.adj(v)) {
+                targets[e++] = w;
+            }
+        }
+        offsets[V] = e;
+        adj = new IntLists(offsets, targets);
+    }
+    
+    // digraph on V vertices with the E edges from[i]->to[i]; edges leaving the same
+    // vertex are kept in reverse order of insertion, as Digraph.adj() returns them
+    CompactDigraph(int V, int[] from, int[] to, int E) {
+        int[] offsets = new int[V + 1];
+        int[] targets = new int[E];
+        
+        for (int i = 0; i < E; i++) {
+            validateVertex(from[i], V);
+            validateVertex(to[i], V);
+            offsets[from[i] + 1]++;
+        }
+        for (int v = 0; v < V; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        
+        int[] next = new int[V];
+        for (int v = 0; v < V; v++) {
+            next[v] = offsets[v + 1];
+        }
+        for (int i = 0; i < E; i++) {
+            targets[--next[from[i]]] = to[i];
+        }
+        adj = new IntLists(offsets, targets);
+    }
+    
+    // digraph with the given adjacency arrays, as returned by offsets() and targets()
+    CompactDigraph(int[] offsets, int[] targets) {
+        if (offsets.length == 0 || offsets[0] != 0 || offsets[offsets.length - 1] != targets.length) {
+            throw new IllegalArgumentException("offsets do not match targets.");
+        }
+        int V = offsets.length - 1;
+        for (int v = 0; v < V; v++) {
+            if (offsets[v] > offsets[v + 1]) {
+                throw new IllegalArgumentException("offsets must be nondecreasing.");
+            }
+        }
+        for (int w : targets) {
+            validateVertex(w, V);
+        }
+        adj = new IntLists(offsets, targets);
+    }
+    
+    private CompactDigraph(IntLists adj) {
+        this.adj = adj;
+    }
+    
+    int V() {
+        return adj.size();
+    }
+    
+    int E() {
+        return adj.total();
+    }
+    
+    int outdegree(int v) {
+        validateVertex(v);
+        return adj.length(v);
+    }
+    
+    // index in heads() of the first edge leaving v
+    int start(int v) {
+        return adj.start(v);
+    }
+    
+    // index in heads() after the last edge leaving v
+    int end(int v) {
+        return adj.end(v);
+    }
+    
+    // heads of the edges, at the indexes given by start() and end(); shared, not copied:
+    // callers must not modify
+    int[] heads() {
+        return adj.data();
+    }
+    
+    // offsets in targets() of the edges leaving each vertex, as in compressed sparse row
+    // form: the heads of the edges leaving v are targets[offsets[v]] .. targets[offsets[v + 1] - 1]
+    int[] offsets() {
+        return adj.offsets();
+    }
+    
+    // heads of all edges, grouped by tail in vertex order; shared, not copied, unless the
+    // digraph has been changed: callers must not modify
+    int[] targets() {
+        return adj.pack();
+    }
+    
+    // copy with a new vertex V whose edges go to adj[0], adj[1], ...; as with
+    // Digraph.addEdge(), the edge added last is listed first
+    CompactDigraph withVertex(int[] adj) {
+        int[] heads = new int[adj.length];
+        for (int i = 0; i < adj.length; i++) {
+            validateVertex(adj[i]);
+            heads[i] = adj[adj.length - 1 - i];
+        }
+        return new CompactDigraph(this.adj.with(V(), heads));
+    }
+    
+    // copy with the edge v->w added; as with Digraph.addEdge(), it is listed first among
+    // the edges leaving v
+    CompactDigraph withEdge(int v, int w) {
+        validateVertex(v);
+        validateVertex(w);
+        
+        int[] heads = new int[adj.length(v) + 1];
+        heads[0] = w;
+        System.arraycopy(adj.data(), adj.start(v), heads, 1, heads.length - 1);
+        return new CompactDigraph(adj.with(v, heads));
+    }
+    
+    // copy without the edge v->w
+    CompactDigraph withoutEdge(int v, int w) {
+        validateVertex(v);
+        validateVertex(w);
+        
+        int[] data = adj.data();
+        int start = adj.start(v);
+        int edge = -1;
+        for (int e = start; e < adj.end(v) && edge == -1; e++) {
+            if (data[e] == w) {
+                edge = e;
+            }
+        }
+        if (edge == -1) {
+            throw new IllegalArgumentException("there is no edge " + v + "->" + w + ".");
+        }
+        
+        int[] heads = new int[adj.length(v) - 1];
+        System.arraycopy(data, start, heads, 0, edge - start);
+        System.arraycopy(data, edge + 1, heads, edge - start, heads.length - (edge - start));
+        return new CompactDigraph(adj.with(v, heads));
+    }
+    
+    // the digraph with every edge reversed
+    CompactDigraph reverse() {
+        int V = V();
+        int[] heads = adj.data();
+        int[] from = new int[E()];
+        int[] to = new int[E()];
+        int i = 0;
+        for (int v = 0; v < V; v++) {
+            for (int e = adj.start(v); e < adj.end(v); e++) {
+                from[i] = heads[e];
+                to[i++] = v;
+            }
+        }
+        return new CompactDigraph(V, from, to, i);
+    }
+    
+    // vertices reachable from s, s included, in bfs order; only vertices x with
+    // include[x] (all if include is null) are visited and expanded
+    int[] reachable(int s, boolean[] include) {
+        validateVertex(s);
+        
+        int V = V();
+        int[] heads = adj.data();
+        boolean[] marked = new boolean[V];
+        int[] queue = new int[V];
+        int head = 0;
+        int tail = 0;
+        marked[s] = true;
+        queue[tail++] = s;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int e = adj.start(v); e < adj.end(v); e++) {
+                int w = heads[e];
+                if (!marked[w] && (include == null || include[w])) {
+                    marked[w] = true;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return Arrays.copyOf(queue, tail);
+    }
+    
+    // vertices in topological order (Kahn's algorithm); null if the digraph has a cycle
+    int[] topologicalOrder() {
+        int V = V();
+        int[] heads = adj.data();
+        int[] indegree = new int[V];
+        for (int v = 0; v < V; v++) {
+            for (int e = adj.start(v); e < adj.end(v); e++) {
+                indegree[heads[e]]++;
+            }
+        }
+        
+        int[] order = new int[V];
+        int head = 0;
+        int tail = 0;
+        for (int v = 0; v < V; v++) {
+            if (indegree[v] == 0) {
+                order[tail++] = v;
+            }
+        }
+        while (head < tail) {
+            int v = order[head++];
+            for (int e = adj.start(v); e < adj.end(v); e++) {
+                if (--indegree[heads[e]] == 0) {
+                    order[tail++] = heads[e];
+                }
+            }
+        }
+        
+        return tail == V ? order : null;
+    }
+    
+    private void validateVertex(int v) {
+        validateVertex(v, V());
+    }
+    
+    private static void validateVertex(int v, int V) {
+        if (v < 0 || v >= V) {
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (V - 1) + ".");
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.util.Arrays;
+
+// immutable lists of ints, numbered 0 .. size() - 1, stored back to back in one array:
+// list i is data()[start(i)] .. data()[end(i) - 1]. A changed copy writes the lists
+// it changes past every list in use and shares the array with the lists it keeps; the
+// starts and ends are held in chunks, and a copy shares those it does not change, so a
+// change costs the changed lists and a chunk instead of a copy of every list. Once the
+// replaced lists outnumber those in use, a change packs the lists into a new array.
+class IntLists {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    
+    private final long[][] spans;  // spans[i >>> CHUNK_BITS][i & (CHUNK - 1)] = start << 32 | end of list i
+    private final int size;
+    private final int total;       // sum of the lengths of the lists
+    private final int[] data;      // shared with the changed copies, which only write past used
+    private final Used used;       // end of the part of data written by any copy
+    private final boolean packed;  // true if the lists fill data in order, with nothing in between or after
+    
+    // lists offsets[i] .. offsets[i + 1] - 1 of data, packed as in compressed sparse row form
+    IntLists(int[] offsets, int[] data) {
+        size = offsets.length - 1;
+        total = offsets[size] - offsets[0];
+        spans = new long[(size + CHUNK - 1) >>> CHUNK_BITS][];
+        for (int c = 0; c < spans.length; c++) {
+            spans[c] = new long[Math.min(CHUNK, size - (c << CHUNK_BITS))];
+        }
+        for (int i = 0; i < size; i++) {
+            spans[i >>> CHUNK_BITS][i & (CHUNK - 1)] = span(offsets[i], offsets[i + 1]);
+        }
+        this.data = data;
+        used = new Used(data, offsets[size]);
+        packed = offsets[0] == 0 && offsets[size] == data.length;
+    }
+    
+    private IntLists(long[][] spans, int size, int total, int[] data, Used used) {
+        this.spans = spans;
+        this.size = size;
+        this.total = total;
+        this.data = data;
+        this.used = used;
+        packed = false;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    // sum of the lengths of the lists
+    int total() {
+        return total;
+    }
+    
+    // index in data() of the first element of list i
+    int start(int i) {
+        return (int) (spans[i >>> CHUNK_BITS][i & (CHUNK - 1)] >>> 32);
+    }
+    
+    // index in data() after the last element of list i
+    int end(int i) {
+        return (int) spans[i >>> CHUNK_BITS][i & (CHUNK - 1)];
+    }
+    
+    int length(int i) {
+        long span = spans[i >>> CHUNK_BITS][i & (CHUNK - 1)];
+        return (int) span - (int) (span >>> 32);
+    }
+    
+    // shared, not copied: callers must not modify
+    int[] data() {
+        return data;
+    }
+    
+    // true if the lists fill data() in order, with nothing in between or after
+    boolean packed() {
+        return packed;
+    }
+    
+    // offsets of the lists as packed by pack(): list i is offsets[i] .. offsets[i + 1] - 1
+    int[] offsets() {
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] = offsets[i] + length(i);
+        }
+        return offsets;
+    }
+    
+    // every list back to back, in order, as in an array of data() that is packed()
+    int[] pack() {
+        if (packed()) {
+            return data;
+        }
+        int[] packed = new int[total];
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            int length = length(i);
+            System.arraycopy(data, start(i), packed, k, length);
+            k += length;
+        }
+        return packed;
+    }
+    
+    // copy with list i replaced by list; i == size() adds it as a new last list
+    IntLists with(int i, int[] list) {
+        return with(new int[] { i }, new int[][] { list }, 1);
+    }
+    
+    // copy with list indexes[j] replaced by lists[j] for each j < count, where each index
+    // is at most size(), or one more than the largest index before it to add lists
+    IntLists with(int[] indexes, int[][] lists, int count) {
+        int newSize = size;
+        long newTotal = total;
+        long written = 0;
+        for (int j = 0; j < count; j++) {
+            int i = indexes[j];
+            if (i < 0 || i > newSize) {
+                throw new IllegalArgumentException("list " + i + " is not between 0 and " + newSize + ".");
+            }
+            if (i == newSize) {
+                newSize++;
+            } else if (i < size) {
+                newTotal -= length(i);
+            }
+            newTotal += lists[j].length;
+            written += lists[j].length;
+        }
+        if (newTotal > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("lists have too many elements.");
+        }
+        
+        long[][] newSpans;
+        int[] newData;
+        synchronized (used) {
+            if (used.end + written > 2 * newTotal + CHUNK) {
+                return pack(newSize, (int) newTotal, indexes, lists, count);
+            }
+            newSpans = Arrays.copyOf(spans, (newSize + CHUNK - 1) >>> CHUNK_BITS);
+            boolean[] copied = new boolean[newSpans.length];
+            if (used.end + written > used.data.length) {
+                used.data = Arrays.copyOf(used.data, (int) Math.min(Integer.MAX_VALUE - 8,
+                                                                    Math.max(2L * used.data.length, used.end + written)));
+            }
+            newData = used.data;
+            for (int j = 0; j < count; j++) {
+                int i = indexes[j];
+                int c = i >>> CHUNK_BITS;
+                if (!copied[c]) {
+                    long[] chunk = c < spans.length ? spans[c] : new long[0];
+                    newSpans[c] = Arrays.copyOf(chunk, Math.min(CHUNK, newSize - (c << CHUNK_BITS)));
+                    copied[c] = true;
+                }
+                System.arraycopy(lists[j], 0, newData, used.end, lists[j].length);
+                newSpans[c][i & (CHUNK - 1)] = span(used.end, used.end + lists[j].length);
+                used.end += lists[j].length;
+            }
+        }
+        return new IntLists(newSpans, newSize, (int) newTotal, newData, used);
+    }
+    
+    // with(), writing every list into a new packed array
+    private IntLists pack(int newSize, int newTotal, int[] indexes, int[][] lists, int count) {
+        int[][] replaced = new int[newSize][];
+        for (int j = 0; j < count; j++) {
+            replaced[indexes[j]] = lists[j];
+        }
+        
+        int[] offsets = new int[newSize + 1];
+        int[] packed = new int[newTotal];
+        for (int i = 0; i < newSize; i++) {
+            int length = replaced[i] != null ? replaced[i].length : length(i);
+            if (replaced[i] != null) {
+                System.arraycopy(replaced[i], 0, packed, offsets[i], length);
+            } else {
+                System.arraycopy(data, start(i), packed, offsets[i], length);
+            }
+            offsets[i + 1] = offsets[i] + length;
+        }
+        return new IntLists(offsets, packed);
+    }
+    
+    private static long span(int start, int end) {
+        return ((long) start << 32) | end;
+    }
+    
+    // the array the lists of every copy are written to, and the end of its written part;
+    // guarded by itself, and grown by copying, so that the lists of earlier copies stay
+    // where they are in the arrays those copies hold
+    private static final class Used {
+        private int[] data;
+        private int end;
+        
+        Used(int[] data, int end) {
+            this.data = data;
+            this.end = end;
+        }
+    }
+}
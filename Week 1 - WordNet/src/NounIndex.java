@@ -0,0 +1,371 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// dictionary from noun to the ids of the synsets containing it. Nouns are found in
+// an open-addressing hash table with linear probing, and the ids of all nouns are
+// slices of one shared int array, so a lookup compares a single string in the common
+// case and never touches a boxed Integer. Nouns added after construction are kept
+// apart, in a small map consulted first, until compacted() folds them in. The map is
+// copied on write and published whole, so lookups may run while a noun is added.
+// Queries read the ids in place: find() names the slice of a shared array holding them.
+class NounIndex {
+    private final String[] nouns;     // all nouns, sorted
+    private final int[] idStart;      // ids of nouns[i] are at [idStart[i], idStart[i + 1]) in ids
+    private final int[] ids;          // synset ids of each noun, sorted
+    private final int[] table;        // 1 + index in nouns of the noun hashed to the slot; 0 if empty
+    private final int[] hashes;       // hashes[i] = hash(nouns[i]), compared before the string
+    private volatile Changes changes;  // nouns added to since construction; replaced, never modified
+    private volatile SynsetNouns synsetNouns;  // ids inverted; null until asked for
+    
+    // index of sorted, distinct nouns whose sorted synset ids are ids[idStart[i] .. idStart[i + 1] - 1]
+    NounIndex(String[] nouns, int[] idStart, int[] ids) {
+        if (idStart.length != nouns.length + 1 || idStart[0] != 0 || idStart[nouns.length] != ids.length) {
+            throw new IllegalArgumentException("id offsets do not match nouns.");
+        }
+        for (int i = 0; i < nouns.length; i++) {
+            if (idStart[i] >= idStart[i + 1]) {
+                throw new IllegalArgumentException(nouns[i] + " has no synsets.");
+            }
+            if (i > 0 && nouns[i - 1].compareTo(nouns[i]) >= 0) {
+                throw new IllegalArgumentException("nouns must be sorted and distinct.");
+            }
+        }
+        
+        this.nouns = nouns;
+        this.idStart = idStart;
+        this.ids = ids;
+        this.changes = new Changes(Collections.<String, Integer>emptyMap(), new int[0][], 0,
+                                   Collections.unmodifiableList(Arrays.asList(nouns)));
+        
+        // load factor at most 1/2
+        int capacity = Integer.highestOneBit(Math.max(2, 2 * nouns.length - 1)) << 1;
+        table = new int[capacity];
+        hashes = new int[nouns.length];
+        for (int i = 0; i < nouns.length; i++) {
+            hashes[i] = hash(nouns[i]);
+            int slot = hashes[i] & (capacity - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            table[slot] = i + 1;
+        }
+    }
+    
+    // number of nouns
+    int size() {
+        return nouns.length + changes.addedCount;
+    }
+    
+    // all nouns in sorted order
+    Iterable<String> nouns() {
+        Changes changes = this.changes;
+        if (changes.nounList == null) {
+            List<String> added = new ArrayList<String>();
+            for (String noun : changes.slots.keySet()) {
+                if (indexOf(noun) == -1) {
+                    added.add(noun);
+                }
+            }
+            Collections.sort(added);
+            
+            List<String> all = new ArrayList<String>(nouns.length + added.size());
+            int j = 0;
+            for (String noun : nouns) {
+                while (j < added.size() && added.get(j).compareTo(noun) < 0) {
+                    all.add(added.get(j++));
+                }
+                all.add(noun);
+            }
+            all.addAll(added.subList(j, added.size()));
+            changes.nounList = Collections.unmodifiableList(all);
+        }
+        return changes.nounList;
+    }
+    
+    boolean contains(String noun) {
+        return find(noun) != -1;
+    }
+    
+    // copy of the ids of the synsets containing the noun, sorted; null if it is not a noun
+    int[] synsetIds(String noun) {
+        int n = find(noun);
+        if (n == -1) {
+            return null;
+        }
+        return Arrays.copyOfRange(idArray(n), idFrom(n), idTo(n));
+    }
+    
+    // handle of the noun, or -1 if it is not a noun. Its sorted ids are
+    // idArray(n)[idFrom(n) .. idTo(n) - 1], read in place: the array is shared, so callers
+    // must not modify it. A handle stays valid, naming the same ids, across later changes
+    int find(String noun) {
+        Map<String, Integer> changed = changes.slots;
+        if (!changed.isEmpty()) {
+            Integer slot = changed.get(noun);
+            if (slot != null) {
+                return -2 - slot;
+            }
+        }
+        return indexOf(noun);
+    }
+    
+    // shared, not copied: callers must not modify
+    int[] idArray(int n) {
+        return n >= 0 ? ids : changes.lists[-2 - n];
+    }
+    
+    int idFrom(int n) {
+        return n >= 0 ? idStart[n] : 0;
+    }
+    
+    int idTo(int n) {
+        return n >= 0 ? idStart[n + 1] : changes.lists[-2 - n].length;
+    }
+    
+    // adds the synset id to those of the noun, adding the noun if it is new. Changes
+    // must not run concurrently with each other; WordNet serializes them
+    void add(String noun, int synsetId) {
+        Changes before = changes;
+        int[] current = synsetIds(noun);
+        if (current == null) {
+            changes = before.with(noun, new int[] { synsetId }, 1, null);
+            return;
+        }
+        
+        int k = Arrays.binarySearch(current, synsetId);
+        if (k < 0) {
+            int[] updated = new int[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, -k - 1);
+            updated[-k - 1] = synsetId;
+            System.arraycopy(current, -k - 1, updated, -k, current.length + k + 1);
+            changes = before.with(noun, updated, 0, before.nounList);
+        }
+    }
+    
+    // index of the same nouns with nothing kept apart, as saved in a snapshot
+    NounIndex compacted() {
+        if (changes.slots.isEmpty()) {
+            return this;
+        }
+        
+        String[] all = new String[size()];
+        int i = 0;
+        for (String noun : nouns()) {
+            all[i++] = noun;
+        }
+        int[] allStart = new int[all.length + 1];
+        int[][] allIds = new int[all.length][];
+        for (i = 0; i < all.length; i++) {
+            allIds[i] = synsetIds(all[i]);
+            allStart[i + 1] = allStart[i] + allIds[i].length;
+        }
+        int[] flat = new int[allStart[all.length]];
+        for (i = 0; i < all.length; i++) {
+            System.arraycopy(allIds[i], 0, flat, allStart[i], allIds[i].length);
+        }
+        return new NounIndex(all, allStart, flat);
+    }
+    
+    // position of the noun among the nouns the index was built with; -1 if it is not one of them
+    int indexOf(String noun) {
+        if (noun == null) {
+            throw new IllegalArgumentException("noun cannot be null.");
+        }
+        
+        int h = hash(noun);
+        int mask = table.length - 1;
+        for (int slot = h & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int i = table[slot] - 1;
+            if (hashes[i] == h && nouns[i].equals(noun)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    // nouns the index was built with; shared, not copied: callers must not modify
+    String[] sortedNouns() {
+        return nouns;
+    }
+    
+    // shared, not copied: callers must not modify
+    int[] idStart() {
+        return idStart;
+    }
+    
+    // shared, not copied: callers must not modify
+    int[] ids() {
+        return ids;
+    }
+    
+    // the nouns of each synset among those the index was built with, built on first use
+    SynsetNouns synsetNouns() {
+        SynsetNouns inverse = synsetNouns;
+        if (inverse == null) {
+            inverse = new SynsetNouns(idStart, ids);
+            synsetNouns = inverse;
+        }
+        return inverse;
+    }
+    
+    // String.hashCode() with its bits spread, so that nouns sharing a suffix
+    // do not cluster in the low bits used as the slot
+    private static int hash(String noun) {
+        int h = noun.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    // collects (noun, synset id) pairs in any order
+    static class Builder {
+        private String[] nouns = new String[16];   // distinct nouns, in order of first appearance
+        private int[] first = new int[16];         // first[i] = last pair of nouns[i], or -1
+        private int nounCount;
+        private int[] pairId = new int[16];        // synset id of each pair
+        private int[] pairNext = new int[16];      // previous pair of the same noun, or -1
+        private int pairCount;
+        private int[] table = new int[32];         // 1 + index in nouns; 0 if empty
+        
+        void add(String noun, int synsetId) {
+            int i = find(noun);
+            if (i == -1) {
+                i = insert(noun);
+            }
+            if (pairCount == pairId.length) {
+                pairId = Arrays.copyOf(pairId, 2 * pairCount);
+                pairNext = Arrays.copyOf(pairNext, 2 * pairCount);
+            }
+            pairId[pairCount] = synsetId;
+            pairNext[pairCount] = first[i];
+            first[i] = pairCount++;
+        }
+        
+        // index of the nouns added so far, with the ids of each noun sorted and distinct
+        NounIndex build() {
+            String[] sorted = Arrays.copyOf(nouns, nounCount);
+            Arrays.sort(sorted);
+            
+            int[] idStart = new int[nounCount + 1];
+            int[] ids = new int[pairCount];
+            int k = 0;
+            for (int i = 0; i < nounCount; i++) {
+                int begin = k;
+                for (int p = first[find(sorted[i])]; p != -1; p = pairNext[p]) {
+                    ids[k++] = pairId[p];
+                }
+                Arrays.sort(ids, begin, k);
+                
+                // a noun listed twice in one synset has that id twice
+                int end = begin;
+                for (int j = begin; j < k; j++) {
+                    if (j == begin || ids[j] != ids[end - 1]) {
+                        ids[end++] = ids[j];
+                    }
+                }
+                k = end;
+                idStart[i + 1] = k;
+            }
+            return new NounIndex(sorted, idStart, k == ids.length ? ids : Arrays.copyOf(ids, k));
+        }
+        
+        private int find(String noun) {
+            int mask = table.length - 1;
+            for (int slot = hash(noun) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+                if (nouns[table[slot] - 1].equals(noun)) {
+                    return table[slot] - 1;
+                }
+            }
+            return -1;
+        }
+        
+        private int insert(String noun) {
+            if (2 * (nounCount + 1) > table.length) {
+                table = new int[2 * table.length];
+                for (int i = 0; i < nounCount; i++) {
+                    place(i);
+                }
+            }
+            if (nounCount == nouns.length) {
+                nouns = Arrays.copyOf(nouns, 2 * nounCount);
+                first = Arrays.copyOf(first, 2 * nounCount);
+            }
+            nouns[nounCount] = noun;
+            first[nounCount] = -1;
+            place(nounCount);
+            return nounCount++;
+        }
+        
+        private void place(int i) {
+            int mask = table.length - 1;
+            int slot = hash(nouns[i]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+    
+    // the ids inverted: the nouns of synset s, by position in the nouns the index was built
+    // with, are nouns[start[s] .. start[s + 1] - 1], in sorted order. Nouns added since
+    // construction are not included
+    static final class SynsetNouns {
+        final int[] start;
+        final int[] nouns;
+        
+        SynsetNouns(int[] idStart, int[] ids) {
+            int synsetCount = 0;
+            for (int id : ids) {
+                synsetCount = Math.max(synsetCount, id + 1);
+            }
+            start = new int[synsetCount + 1];
+            for (int id : ids) {
+                start[id + 1]++;
+            }
+            for (int s = 0; s < synsetCount; s++) {
+                start[s + 1] += start[s];
+            }
+            
+            nouns = new int[ids.length];
+            int[] next = Arrays.copyOf(start, synsetCount);
+            for (int i = 0; i + 1 < idStart.length; i++) {
+                for (int k = idStart[i]; k < idStart[i + 1]; k++) {
+                    nouns[next[ids[k]]++] = i;
+                }
+            }
+        }
+        
+        // synsets covered, from 0
+        int synsetCount() {
+            return start.length - 1;
+        }
+    }
+    
+    // nouns added to since construction, with the sorted ids of each; never modified once
+    // published, apart from filling in nounList. The ids of a noun added to again go to a
+    // new slot, so that a handle to the old slot keeps naming the ids it was found with
+    private static final class Changes {
+        private final Map<String, Integer> slots; // slot in lists of the current ids of each noun added to
+        private final int[][] lists;              // sorted ids by slot, each never modified
+        private final int addedCount;             // number of nouns in slots but not in nouns
+        private volatile List<String> nounList;   // all nouns, sorted; null until asked for
+        
+        Changes(Map<String, Integer> slots, int[][] lists, int addedCount, List<String> nounList) {
+            this.slots = slots;
+            this.lists = lists;
+            this.addedCount = addedCount;
+            this.nounList = nounList;
+        }
+        
+        // a copy with the ids of noun replaced, and added more nouns that are not in nouns
+        private Changes with(String noun, int[] nounIds, int added, List<String> nounList) {
+            Map<String, Integer> copy = new HashMap<String, Integer>(slots);
+            copy.put(noun, lists.length);
+            int[][] grown = Arrays.copyOf(lists, lists.length + 1);
+            grown[lists.length] = nounIds;
+            return new Changes(copy, grown, addedCount + added, nounList);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdOut;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Outcast {
     private final WordNet wordnet;
@@ -18,15 +20,45 @@ public class Outcast {
             throw new IllegalArgumentException("nouns cannot be null.");
         }   
         
+        return outcast(nouns, false);
+    }
+    
+    // outcast of each list of nouns, in input order; the lists and the rows of their
+    // distance matrices are spread over the common fork-join pool
+    public String[] outcasts(String[][] lists) {
+        return outcasts(lists, ForkJoinPool.commonPool());
+    }
+    
+    // outcast of each list of nouns, in input order, computed in the given fork-join pool
+    public String[] outcasts(String[][] lists, ForkJoinPool pool) {
+        if (lists == null) {
+            throw new IllegalArgumentException("lists cannot be null.");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("pool cannot be null.");
+        }
+        for (String[] nouns : lists) {
+            if (nouns == null) {
+                throw new IllegalArgumentException("nouns cannot be null.");
+            }
+        }
+        
+        String[] outcasts = new String[lists.length];
+        pool.invoke(new OutcastTask(lists, outcasts, 0, lists.length));
+        return outcasts;
+    }
+    
+    private String outcast(String[] nouns, boolean parallel) {
         int distanceMax = -1;
         int nounId = -1;
+        int[][] distances = wordnet.distances(nouns, parallel);
         
         // compute the sum of the distances between each noun
         // and return a noun xt for which dt is maximum
         for (int i = 0; i < nouns.length; i++) {
             int distanceSum = 0;
             for (int j = 0; j < nouns.length; j++) {
-                distanceSum += wordnet.distance(nouns[i], nouns[j]);
+                distanceSum += distances[i][j];
             }
             
             if (distanceSum > distanceMax) {
@@ -37,14 +69,44 @@ public class Outcast {
         return nouns[nounId];
     }
     
+    // outcasts of lists lo..hi-1, split in halves down to single lists
+    @SuppressWarnings("serial")
+    private class OutcastTask extends RecursiveAction {
+        private final String[][] lists;
+        private final String[] outcasts;
+        private final int lo, hi;
+        
+        OutcastTask(String[][] lists, String[] outcasts, int lo, int hi) {
+            this.lists = lists;
+            this.outcasts = outcasts;
+            this.lo = lo;
+            this.hi = hi;
+        }
+        
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new OutcastTask(lists, outcasts, lo, mid),
+                          new OutcastTask(lists, outcasts, mid, hi));
+            } else if (hi - lo == 1) {
+                outcasts[lo] = outcast(lists[lo], true);
+            }
+        }
+    }
+    
     // see test client below
     public static void main(String[] args) {
         WordNet wordnet = new WordNet(args[0], args[1]);
         Outcast outcast = new Outcast(wordnet);
+        String[][] lists = new String[args.length - 2][];
         for (int t = 2; t < args.length; t++) {
             In in = new In(args[t]);
-            String[] nouns = in.readAllStrings();
-            StdOut.println(args[t] + ": " + outcast.outcast(nouns));
+            lists[t - 2] = in.readAllStrings();
+        }
+        String[] outcasts = outcast.outcasts(lists);
+        for (int t = 2; t < args.length; t++) {
+            StdOut.println(args[t] + ": " + outcasts[t - 2]);
         }
     }
 }
\ No newline at end of file
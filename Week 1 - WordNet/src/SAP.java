@@ -2,42 +2,137 @@ import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
 import edu.princeton.cs.algs4.Digraph;
-import edu.princeton.cs.algs4.Queue;
-import edu.princeton.cs.algs4.Stack;
-import java.util.Collections; 
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class SAP {
-    private final Digraph g;   // copy of associated digraph
+    // levels of the balanced bfs with at least this many vertices are expanded in parallel
+    static final int PARALLEL_FRONTIER = 16384;
     
-    private final boolean[] marked1; // marked1[v] = is there an V->v path?
-    private final boolean[] marked2; // marked2[v] = is there an W->v path?
-    private final int[] distTo1;     // distTo1[v] = length of shortest V->v path
-    private final int[] distTo2;     // distTo2[v] = length of shortest W->v path
-    private int ancestor;     // length of the shortest path between V and W
-    private int distance;     // the nearest ancestor of V and W
+    // compact copy of associated digraph; replaced, never modified, when the digraph
+    // changes, so a query sees it either before or after the change
+    private volatile CompactDigraph g;
+    
+    // idle search states; each query borrows one so that concurrent queries
+    // never share the marked/distTo arrays
+    private final AtomicReferenceArray<SearchState> states;
+    
+    private final SAPCache cache;  // results of recent queries; null if caching is disabled
+    
+    private volatile AncestorIndex index;  // ancestor labels; null unless Strategy.ANCESTOR_INDEX
+    
+    private volatile TreeLCA tree;  // lowest common ancestors; null unless forest and the digraph is one
+    
+    // topological order of g in order[orderStart .. order.length - 1], kept up to date by the
+    // changes with room before it for the vertices they add; null if not known
+    private int[] order;
+    private int orderStart;
+    
+    // kept up to date by the changes, from the first one on
+    private CompactDigraph reverse;  // g with every edge reversed; null until needed
+    private int[] position;  // position[v] = index of v in order; null before the first change
+    private int branching;   // vertices with two edges or more, if forest
+    private int[] mark;      // mark[v] == markEpoch iff reach() has reached v
+    private int markEpoch;
+    private int[] queue;     // scratch of reach()
+    private boolean[] changed; // scratch of replace(), all false between changes
+    
+    private final boolean balanced;     // true for Strategy.BALANCED_BFS
+    
+    private final boolean forest;       // true for Strategy.BFS and Strategy.FOREST_LCA
+    
+    private volatile SAPMetrics metrics;  // work and latency of the searches; null until enabled
+    
+    private volatile int parallelFrontier = PARALLEL_FRONTIER;
+    
+    // how queries are answered
+    public enum Strategy {
+        BFS,            // two bfs lockstep from the two source sets; any digraph. While every
+                        // vertex has at most one outgoing edge (a forest), lowest common
+                        // ancestors in constant time instead, checked by an O(V) scan of the
+                        // outdegrees at construction and kept track of by the changes
+        BALANCED_BFS,   // two bfs a whole level at a time, always the smaller frontier first,
+                        // each stopping once its next level cannot shorten the path; any digraph.
+                        // Levels of PARALLEL_FRONTIER vertices or more are expanded in
+                        // parallel, by either bfs
+        ANCESTOR_INDEX, // merge of ancestor distance labels built at construction; DAGs only
+        FOREST_LCA      // BFS, naming the forest index explicitly
+    }
     
     // constructor takes a diagraph (not necessarily a DAG)
     public SAP(Digraph G) {
+        this(G, 0);
+    }
+    
+    // constructor takes a diagraph (not necessarily a DAG) and keeps the results
+    // of up to cacheCapacity recent queries; 0 disables the cache
+    public SAP(Digraph G, int cacheCapacity) {
+        this(G, Strategy.BFS, cacheCapacity);
+    }
+    
+    // constructor takes a diagraph, the strategy used to answer queries (ANCESTOR_INDEX
+    // requires a DAG) and the number of recent query results to cache; 0 disables the cache
+    public SAP(Digraph G, Strategy strategy, int cacheCapacity) {
+        this(compact(G), strategy, cacheCapacity, null);
+    }
+    
+    // constructor takes a digraph already in compact form, as built by WordNet, and
+    // its topological order if already known
+    SAP(CompactDigraph G, Strategy strategy, int cacheCapacity, int[] topologicalOrder) {
         if (G == null) {
             throw new IllegalArgumentException("G cannot be null.");
-        }   
-        // defensive copy
-        g = new Digraph(G);
+        }
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy cannot be null.");
+        }
+        if (cacheCapacity < 0) {
+            throw new IllegalArgumentException("cacheCapacity cannot be negative.");
+        }
+        g = G;
+        balanced = strategy == Strategy.BALANCED_BFS;
+        forest = strategy == Strategy.BFS || strategy == Strategy.FOREST_LCA;
+        
+        states = new AtomicReferenceArray<SearchState>(2 * Runtime.getRuntime().availableProcessors());
+        cache = cacheCapacity > 0 ? new SAPCache(cacheCapacity) : null;
         
-        marked1 = new boolean[g.V()];
-        marked2 = new boolean[g.V()];
-        distTo1 = new int[g.V()];
-        distTo2 = new int[g.V()];
+        tree = forest ? TreeLCA.of(g) : null;
+        if (strategy == Strategy.ANCESTOR_INDEX) {
+            int[] order = topologicalOrder != null ? topologicalOrder : g.topologicalOrder();
+            if (order == null) {
+                throw new IllegalArgumentException("ancestor index requires a DAG.");
+            }
+            index = new AncestorIndex(g, order);
+            this.order = order;
+        } else {
+            index = null;
+            this.order = topologicalOrder;
+        }
     }
     
     // length of the shortest ancestral path between v and w; -1 if no such path
     public int length(int v, int w) {
-        return length(Collections.singletonList(v), Collections.singletonList(w));
+        validateVertex(v);
+        validateVertex(w);
+        
+        return AncestorIndex.lengthOf(cache != null ? cachedResult(v, w) : searchResult(v, w));
     }
     
     // a common ancestor of v and w that participates in a shortest ancestral path; -1 if no such path
     public int ancestor(int v, int w) {
-        return ancestor(Collections.singletonList(v), Collections.singletonList(w));
+        validateVertex(v);
+        validateVertex(w);
+        
+        return AncestorIndex.ancestorOf(cache != null ? cachedResult(v, w) : searchResult(v, w));
+    }
+    
+    // shortest ancestral path between v and w, with its length and ancestor, from a single search
+    public AncestralPath ancestralPath(int v, int w) {
+        validateVertex(v);
+        validateVertex(w);
+        
+        return ancestralPath(new int[] { v }, new int[] { w });
     }
     
     // length of shortest ancetral path between any vertex in v and any vertex in w; -1 if no such path
@@ -45,9 +140,20 @@ public class SAP {
         validateVertices(v);
         validateVertices(w);
         
-        bfs(v, w);
+        if (cache != null) {
+            return AncestorIndex.lengthOf(cachedResult(toArray(v), toArray(w)));
+        }
+        if (tree != null || index != null) {
+            return AncestorIndex.lengthOf(searchResult(toArray(v), toArray(w)));
+        }
         
-        return distance;
+        SearchState state = acquireState();
+        try {
+            state.bfs(v, w);
+            return state.distance;
+        } finally {
+            releaseState(state);
+        }
     }
     
     // a common ancestor that participates in shortest ancestral path; -1 if no such path
@@ -55,94 +161,1344 @@ public class SAP {
         validateVertices(v);
         validateVertices(w);
         
-        bfs(v, w);
+        if (cache != null) {
+            return AncestorIndex.ancestorOf(cachedResult(toArray(v), toArray(w)));
+        }
+        if (tree != null || index != null) {
+            return AncestorIndex.ancestorOf(searchResult(toArray(v), toArray(w)));
+        }
+        
+        SearchState state = acquireState();
+        try {
+            state.bfs(v, w);
+            return state.ancestor;
+        } finally {
+            releaseState(state);
+        }
+    }
+    
+    // shortest ancestral path between any vertex in v and any vertex in w, with its length
+    // and ancestor, from a single search
+    public AncestralPath ancestralPath(Iterable<Integer> v, Iterable<Integer> w) {
+        validateVertices(v);
+        validateVertices(w);
+        
+        return ancestralPath(toArray(v), toArray(w));
+    }
+    
+    // length of shortest ancetral path between any vertex in v and any vertex in w; -1 if no such path
+    public int length(int[] v, int[] w) {
+        validateVertices(v);
+        validateVertices(w);
+        
+        return AncestorIndex.lengthOf(cache != null ? cachedResult(v, w) : searchResult(v, w));
+    }
+    
+    // a common ancestor that participates in shortest ancestral path; -1 if no such path
+    public int ancestor(int[] v, int[] w) {
+        validateVertices(v);
+        validateVertices(w);
+        
+        return AncestorIndex.ancestorOf(cache != null ? cachedResult(v, w) : searchResult(v, w));
+    }
+    
+    // length(int[], int[]) between v[vFrom .. vTo - 1] and w[wFrom .. wTo - 1]. The slices
+    // are read in place, so that callers holding many sets in one array, as NounIndex does,
+    // need not copy them for each query
+    int length(int[] v, int vFrom, int vTo, int[] w, int wFrom, int wTo) {
+        validateVertices(v, vFrom, vTo);
+        validateVertices(w, wFrom, wTo);
+        
+        return AncestorIndex.lengthOf(sliceResult(v, vFrom, vTo, w, wFrom, wTo));
+    }
+    
+    // ancestor(int[], int[]) between v[vFrom .. vTo - 1] and w[wFrom .. wTo - 1], read in place
+    int ancestor(int[] v, int vFrom, int vTo, int[] w, int wFrom, int wTo) {
+        validateVertices(v, vFrom, vTo);
+        validateVertices(w, wFrom, wTo);
+        
+        return AncestorIndex.ancestorOf(sliceResult(v, vFrom, vTo, w, wFrom, wTo));
+    }
+    
+    // shortest ancestral path between any vertex in v and any vertex in w, with its length
+    // and ancestor, from a single search
+    public AncestralPath ancestralPath(int[] v, int[] w) {
+        validateVertices(v);
+        validateVertices(w);
+        
+        if (cache != null) {
+            return cachedAncestralPath(v, w);
+        }
+        return searchAncestralPath(v, w);
+    }
+    
+    // lengths[i][j] = length of shortest ancestral path between any vertex in sources[i]
+    // and any vertex in sources[j]; -1 if no such path. Each set is searched once, and
+    // the symmetric pairs and the diagonal are not searched at all.
+    public int[][] lengths(int[][] sources) {
+        return lengths(sources, false);
+    }
+    
+    // lengths(sources), optionally with the searches and the rows of the matrix split
+    // into fork-join tasks (run in the caller's pool, or the common pool)
+    int[][] lengths(int[][] sources, boolean parallel) {
+        if (sources == null) {
+            throw new IllegalArgumentException("sources cannot be null.");
+        }
+        for (int[] vertices : sources) {
+            validateVertices(vertices);
+        }
+        
+        int n = sources.length;
+        long[][] reached = new long[n][];
+        int[][] lengths = new int[n][n];
+        if (parallel) {
+            new RowsTask(sources, reached, lengths, 0, n, true).invoke();
+            new RowsTask(sources, reached, lengths, 0, n, false).invoke();
+            return lengths;
+        }
+        
+        for (int i = 0; i < n; i++) {
+            reached[i] = ancestors(sources[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            fillRow(reached, lengths, i);
+        }
+        return lengths;
+    }
+    
+    // lengths[i] = length of shortest ancestral path between any vertex in sources[i] and
+    // any vertex in target; -1 if no such path. The target is searched once, and the
+    // sources up to 64 sets at a time in a single bit-parallel sweep of the digraph.
+    public int[] lengths(int[][] sources, int[] target) {
+        if (sources == null) {
+            throw new IllegalArgumentException("sources cannot be null.");
+        }
+        for (int[] vertices : sources) {
+            validateVertices(vertices);
+        }
+        validateVertices(target);
+        
+        int[] lengths = new int[sources.length];
+        AncestorIndex index = this.index;
+        if (index != null) {
+            long[] targetLabel = index.merge(target);
+            for (int i = 0; i < sources.length; i++) {
+                lengths[i] = AncestorIndex.lengthOf(AncestorIndex.meet(index.merge(sources[i]), targetLabel));
+            }
+            return lengths;
+        }
+        
+        SearchState state = acquireState();
+        try {
+            for (int lo = 0; lo < sources.length; lo += 64) {
+                state.multiSourceBfs(sources, lo, Math.min(sources.length, lo + 64), target, lengths);
+            }
+            return lengths;
+        } finally {
+            releaseState(state);
+        }
+    }
+    
+    // number of queries answered from the cache
+    public long cacheHits() {
+        return cache == null ? 0 : cache.hits();
+    }
+    
+    // number of queries that had to run a search with the cache enabled
+    public long cacheMisses() {
+        return cache == null ? 0 : cache.misses();
+    }
+    
+    // starts recording the work and latency of every bfs search, and returns the metrics
+    // they are recorded in; queries answered by an index or the cache run no search
+    public synchronized SAPMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new SAPMetrics();
+        }
+        return metrics;
+    }
+    
+    // the metrics recorded since enableMetrics(); null if it was never called
+    public SAPMetrics metrics() {
+        return metrics;
+    }
+    
+    // expands the levels of the lockstep and balanced bfs with at least size vertices in parallel
+    void parallelFrontier(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be positive.");
+        }
+        parallelFrontier = size;
+    }
+    
+    // the digraph, as changed so far; shared, not copied: callers must not modify
+    CompactDigraph digraph() {
+        return g;
+    }
+    
+    // digraph() with every edge reversed, kept up to date by the changes once built;
+    // shared, not copied: callers must not modify
+    synchronized CompactDigraph reverseDigraph() {
+        if (reverse == null) {
+            reverse = g.reverse();
+        }
+        return reverse;
+    }
+    
+    // topological order of digraph(); a copy, as the changes reorder it in place
+    synchronized int[] topologicalOrder() {
+        int[] order = knownOrder();
+        return Arrays.copyOfRange(order, orderStart, order.length);
+    }
+    
+    // The changes below run one at a time and may run while other threads query. A query
+    // reads the digraph and each index once, so it answers as if it ran entirely before or
+    // entirely after a concurrent change. A change copies only the edges of the vertex it
+    // changes and the labels of the vertices whose ancestors change; the reverse digraph and
+    // the position of each vertex in the order are kept from one change to the next.
+    
+    // adds a vertex, numbered V, with an edge to each vertex in adj. Nothing reaches it,
+    // so no cached path or ancestor label changes. Requires a DAG.
+    synchronized void addVertex(int[] adj) {
+        validateVertices(adj);
+        prepareChanges();
+        
+        // with no edge into it, the new vertex can come first
+        int v = g.V();
+        if (orderStart == 0) {
+            growOrder();
+        }
+        ensureCapacity(v + 1);
+        order[--orderStart] = v;
+        position[v] = orderStart;
+        
+        reverse = reverse.withVertex(new int[0]);
+        for (int w : adj) {
+            reverse = reverse.withEdge(w, v);
+        }
+        if (adj.length > 1) {
+            branching++;
+        }
+        replace(g.withVertex(adj), new int[] { v });
+    }
+    
+    // adds the edge v->w, unless it would create a cycle. Only the paths from v and the
+    // vertices that reach it change. Requires a DAG.
+    synchronized void addEdge(int v, int w) {
+        validateVertex(v);
+        validateVertex(w);
+        if (v == w) {
+            throw new IllegalArgumentException("edge " + v + "->" + w + " would create a cycle.");
+        }
+        prepareChanges();
+        
+        // if v already comes before w the order stays valid, and w cannot reach v. Otherwise
+        // (Pearce and Kelly) only the vertices placed from w to v can be on a w->v path; those
+        // w reaches move after those that reach v, keeping the positions they occupy.
+        if (position[v] > position[w]) {
+            int[] forward = reach(g, w, position[w], position[v]);
+            for (int x : forward) {
+                if (x == v) {
+                    throw new IllegalArgumentException("edge " + v + "->" + w + " would create a cycle.");
+                }
+            }
+            int[] backward = reach(reverse, v, position[w], position[v]);
+            reorder(backward, forward);
+        }
+        
+        // adding v->w creates no new path into v, so its descendants are those of g
+        int[] affected = reach(reverse, v, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        if (g.outdegree(v) == 1) {
+            branching++;
+        }
+        reverse = reverse.withEdge(w, v);
+        replace(g.withEdge(v, w), affected);
+    }
+    
+    // removes the edge v->w. Only the paths from v and the vertices that reach it change.
+    // Requires a DAG.
+    synchronized void removeEdge(int v, int w) {
+        validateVertex(v);
+        validateVertex(w);
+        prepareChanges();
+        
+        CompactDigraph G = g.withoutEdge(v, w);
+        if (g.outdegree(v) == 2) {
+            branching--;
+        }
+        reverse = reverse.withoutEdge(w, v);
+        replace(G, reach(reverse, v, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+    
+    // whether the tree index answers a query between v and w: it tries every pair of
+    // sources, so large sets are searched instead
+    private static boolean treeAnswers(TreeLCA tree, int[] v, int[] w) {
+        return treeAnswers(tree, v.length, w.length);
+    }
+    
+    // treeAnswers(TreeLCA, int[], int[]) for sets of vCount and wCount vertices
+    private static boolean treeAnswers(TreeLCA tree, int vCount, int wCount) {
+        return tree != null && (long) vCount * wCount <= TreeLCA.MAX_PAIRS;
+    }
+    
+    // the topological order, computed the first time it is needed
+    private int[] knownOrder() {
+        if (order == null) {
+            order = g.topologicalOrder();
+            if (order == null) {
+                throw new IllegalArgumentException("digraph must be a DAG to be changed.");
+            }
+            orderStart = 0;
+        }
+        return order;
+    }
+    
+    // builds what the changes keep up to date, the first time one runs: the reverse
+    // digraph, a copy of the order that they reorder in place with the position of each
+    // vertex in it, and for a forest strategy the number of vertices with two edges or more
+    private void prepareChanges() {
+        if (position != null) {
+            return;
+        }
+        knownOrder();
+        reverseDigraph();
+        ensureCapacity(g.V());
+        growOrder();
+        if (forest) {
+            for (int v = 0; v < g.V(); v++) {
+                if (g.outdegree(v) > 1) {
+                    branching++;
+                }
+            }
+        }
+    }
+    
+    // copies the order to the end of an array with as much room before it as it fills, for
+    // the vertices added next, and moves each position with it
+    private void growOrder() {
+        int n = order.length - orderStart;
+        int room = Math.max(16, n);
+        int[] grown = new int[room + n];
+        System.arraycopy(order, orderStart, grown, room, n);
+        for (int i = room; i < grown.length; i++) {
+            position[grown[i]] = i;
+        }
+        order = grown;
+        orderStart = room;
+    }
+    
+    // grows the arrays indexed by vertex to hold at least V vertices, doubling them
+    private void ensureCapacity(int V) {
+        int n = position == null ? 0 : position.length;
+        if (n >= V) {
+            return;
+        }
+        n = Math.max(V, 2 * n);
+        position = position == null ? new int[n] : Arrays.copyOf(position, n);
+        mark = mark == null ? new int[n] : Arrays.copyOf(mark, n);
+        queue = new int[n];
+        changed = new boolean[n];
+    }
+    
+    // vertices reachable from s in G, s included, in bfs order, visiting only the vertices
+    // whose position is between lo and hi
+    private int[] reach(CompactDigraph G, int s, int lo, int hi) {
+        if (markEpoch == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            markEpoch = 0;
+        }
+        markEpoch++;
+        
+        int[] heads = G.heads();
+        int head = 0;
+        int tail = 0;
+        mark[s] = markEpoch;
+        queue[tail++] = s;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int e = G.start(v); e < G.end(v); e++) {
+                int w = heads[e];
+                if (mark[w] != markEpoch && position[w] >= lo && position[w] <= hi) {
+                    mark[w] = markEpoch;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return Arrays.copyOf(queue, tail);
+    }
+    
+    // moves the vertices of first, then those of second, each in their old relative order,
+    // into the positions the two sets occupy
+    private void reorder(int[] first, int[] second) {
+        int n = first.length + second.length;
+        int[] slots = new int[n];
+        int[] firstSlots = new int[first.length];
+        int[] secondSlots = new int[second.length];
+        for (int i = 0; i < first.length; i++) {
+            firstSlots[i] = position[first[i]];
+            slots[i] = firstSlots[i];
+        }
+        for (int i = 0; i < second.length; i++) {
+            secondSlots[i] = position[second[i]];
+            slots[first.length + i] = secondSlots[i];
+        }
+        Arrays.sort(slots);
+        Arrays.sort(firstSlots);
+        Arrays.sort(secondSlots);
+        
+        int[] moved = new int[n];
+        for (int i = 0; i < first.length; i++) {
+            moved[i] = order[firstSlots[i]];
+        }
+        for (int i = 0; i < second.length; i++) {
+            moved[first.length + i] = order[secondSlots[i]];
+        }
+        for (int i = 0; i < n; i++) {
+            order[slots[i]] = moved[i];
+            position[moved[i]] = slots[i];
+        }
+    }
+    
+    // switches to the changed digraph G: relabels the affected vertices, whose paths may
+    // have changed, and drops their cached paths. The index is replaced before the
+    // digraph, so that a query that sees the new digraph also sees the new labels; the
+    // forest index is rebuilt if G is a forest, and dropped if not. A query reads each
+    // index once, so it uses one whole index, from before or after the change.
+    private void replace(CompactDigraph G, int[] affected) {
+        if (index != null) {
+            long[] byPosition = new long[affected.length];
+            for (int i = 0; i < affected.length; i++) {
+                byPosition[i] = ((long) position[affected[i]] << 32) | affected[i];
+            }
+            Arrays.sort(byPosition);
+            int[] hypernymsFirst = new int[affected.length];
+            for (int i = 0; i < affected.length; i++) {
+                hypernymsFirst[i] = (int) byPosition[affected.length - 1 - i];
+            }
+            index = new AncestorIndex(G, index, hypernymsFirst);
+        }
+        if (forest) {
+            tree = branching == 0 ? TreeLCA.of(G) : null;
+        }
+        g = G;
+        
+        if (cache != null) {
+            for (int v : affected) {
+                changed[v] = true;
+            }
+            cache.invalidate(changed);
+            for (int v : affected) {
+                changed[v] = false;
+            }
+        }
+    }
+    
+    private AncestralPath searchAncestralPath(int[] v, int[] w) {
+        TreeLCA tree = this.tree;
+        if (treeAnswers(tree, v, w)) {
+            return tree.ancestralPath(v, w);
+        }
+        AncestorIndex index = this.index;
+        if (index != null) {
+            return index.ancestralPath(v, w);
+        }
+        
+        SearchState state = acquireState();
+        try {
+            state.bfs(v, w);
+            return new AncestralPath(state.distance, state.ancestor, state.path());
+        } finally {
+            releaseState(state);
+        }
+    }
+    
+    // length and ancestor of the shortest ancestral path between v and w, packed by
+    // AncestorIndex.pack()
+    private long searchResult(int v, int w) {
+        TreeLCA tree = this.tree;
+        if (tree != null) {
+            return tree.search(v, w);
+        }
+        AncestorIndex index = this.index;
+        if (index != null) {
+            return index.search(v, w);
+        }
+        
+        SearchState state = acquireState();
+        try {
+            state.bfs(v, w);
+            return AncestorIndex.pack(state.distance, state.ancestor);
+        } finally {
+            releaseState(state);
+        }
+    }
+    
+    // searchResult(int, int) between any vertex in v and any vertex in w
+    private long searchResult(int[] v, int[] w) {
+        return searchResult(v, 0, v.length, w, 0, w.length);
+    }
+    
+    // searchResult(int[], int[]) between v[vFrom .. vTo - 1] and w[wFrom .. wTo - 1]
+    private long searchResult(int[] v, int vFrom, int vTo, int[] w, int wFrom, int wTo) {
+        TreeLCA tree = this.tree;
+        if (treeAnswers(tree, vTo - vFrom, wTo - wFrom)) {
+            return tree.search(v, vFrom, vTo, w, wFrom, wTo);
+        }
+        AncestorIndex index = this.index;
+        if (index != null) {
+            return index.search(v, vFrom, vTo, w, wFrom, wTo);
+        }
+        
+        SearchState state = acquireState();
+        try {
+            state.bfs(v, vFrom, vTo, w, wFrom, wTo);
+            return AncestorIndex.pack(state.distance, state.ancestor);
+        } finally {
+            releaseState(state);
+        }
+    }
+    
+    // lengths[i][j] and lengths[j][i] for every j > i
+    private static void fillRow(long[][] reached, int[][] lengths, int i) {
+        for (int j = i + 1; j < reached.length; j++) {
+            int length = AncestorIndex.lengthOf(AncestorIndex.meet(reached[i], reached[j]));
+            lengths[i][j] = length;
+            lengths[j][i] = length;
+        }
+    }
+    
+    // searches (or matrix rows) lo..hi-1 of lengths(), split in halves down to single rows
+    @SuppressWarnings("serial")
+    private class RowsTask extends RecursiveAction {
+        private final int[][] sources;
+        private final long[][] reached;
+        private final int[][] lengths;
+        private final int lo, hi;
+        private final boolean search;   // true to fill reached, false to fill lengths
+        
+        RowsTask(int[][] sources, long[][] reached, int[][] lengths, int lo, int hi, boolean search) {
+            this.sources = sources;
+            this.reached = reached;
+            this.lengths = lengths;
+            this.lo = lo;
+            this.hi = hi;
+            this.search = search;
+        }
         
-        return ancestor;
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new RowsTask(sources, reached, lengths, lo, mid, search),
+                          new RowsTask(sources, reached, lengths, mid, hi, search));
+            } else if (hi - lo == 1) {
+                if (search) {
+                    reached[lo] = ancestors(sources[lo]);
+                } else {
+                    fillRow(reached, lengths, lo);
+                }
+            }
+        }
     }
     
-     // run two bfs lockstep from vSources and wSources to compute sap
-    private void bfs(Iterable<Integer> vSources, Iterable<Integer> wSources) {
-        ancestor = -1;
-        distance = -1;
+    // every ancestor of the sources with its distance, as (ancestor << 32 | distance)
+    // sorted by ancestor
+    private long[] ancestors(int[] sources) {
+        AncestorIndex index = this.index;
+        if (index != null) {
+            return index.merge(sources);
+        }
+        
+        SearchState state = acquireState();
+        try {
+            return state.ancestors(sources);
+        } finally {
+            releaseState(state);
+        }
+    }
+    
+    // looks the query up in the cache, running and caching the search on a miss
+    private AncestralPath cachedAncestralPath(int[] v, int[] w) {
+        int[] vKey = SAPCache.normalize(v);
+        int[] wKey = SAPCache.normalize(w);
+        
+        AncestralPath path = cache.path(vKey, wKey);
+        if (path == null) {
+            long generation = cache.generation();
+            path = searchAncestralPath(vKey, wKey);
+            cache.putPath(vKey, wKey, path, generation);
+        }
+        return path;
+    }
+    
+    // length and ancestor between v and w, packed, from the cache or else from a search
+    // that caches them without building the path
+    private long cachedResult(int v, int w) {
+        long result = cache.result(v, w);
+        if (result == SAPCache.MISS) {
+            long generation = cache.generation();
+            result = searchResult(v, w);
+            cache.putResult(v, w, result, generation);
+        }
+        return result;
+    }
+    
+    // length and ancestor between the slices, packed, as the query on single vertices when
+    // both are single vertices; only the cache, which keeps its keys, copies them
+    private long sliceResult(int[] v, int vFrom, int vTo, int[] w, int wFrom, int wTo) {
+        if (vTo - vFrom == 1 && wTo - wFrom == 1) {
+            return cache != null ? cachedResult(v[vFrom], w[wFrom]) : searchResult(v[vFrom], w[wFrom]);
+        }
+        if (cache != null) {
+            return cachedResult(Arrays.copyOfRange(v, vFrom, vTo), Arrays.copyOfRange(w, wFrom, wTo));
+        }
+        return searchResult(v, vFrom, vTo, w, wFrom, wTo);
+    }
+    
+    // cachedResult(int, int) between any vertex in v and any vertex in w
+    private long cachedResult(int[] v, int[] w) {
+        int[] vKey = SAPCache.normalize(v);
+        int[] wKey = SAPCache.normalize(w);
+        
+        long result = cache.result(vKey, wKey);
+        if (result == SAPCache.MISS) {
+            long generation = cache.generation();
+            result = searchResult(vKey, wKey);
+            cache.putResult(vKey, wKey, result, generation);
+        }
+        return result;
+    }
+    
+    // defensive copy of G in compressed sparse row form
+    private static CompactDigraph compact(Digraph G) {
+        if (G == null) {
+            throw new IllegalArgumentException("G cannot be null.");
+        }
+        return new CompactDigraph(G);
+    }
+    
+    // borrows an idle search state, or creates one if all are in use; a state too small for
+    // the digraph, as vertices have been added, is dropped. New states leave room for a few
+    // more vertices, so that adding one does not drop them all
+    private SearchState acquireState() {
+        CompactDigraph G = g;
+        int n = states.length();
+        int start = (int) (Thread.currentThread().getId() % n);
+        for (int i = 0; i < n; i++) {
+            int slot = (start + i) % n;
+            SearchState state = states.get(slot);
+            if (state != null && states.compareAndSet(slot, state, null) && state.marked1.length >= G.V()) {
+                state.use(G);
+                state.metrics = metrics;
+                state.parallelFrontier = parallelFrontier;
+                return state;
+            }
+        }
+        SearchState state = new SearchState(G, balanced, G.V() + G.V() / 16);
+        state.metrics = metrics;
+        state.parallelFrontier = parallelFrontier;
+        return state;
+    }
+    
+    // returns a search state to the pool; dropped if the pool is full
+    private void releaseState(SearchState state) {
+        int n = states.length();
+        int start = (int) (Thread.currentThread().getId() % n);
+        for (int i = 0; i < n; i++) {
+            int slot = (start + i) % n;
+            if (states.get(slot) == null && states.compareAndSet(slot, null, state)) {
+                return;
+            }
+        }
+    }
+    
+    private static int[] toArray(Iterable<Integer> vertices) {
+        int n = 0;
+        for (int v : vertices) {
+            n++;
+        }
+        
+        int[] array = new int[n];
+        int i = 0;
+        for (int v : vertices) {
+            array[i++] = v;
+        }
+        return array;
+    }
+    
+    // scratch arrays and result of a single sap computation;
+    // used by one thread at a time and reused without allocation
+    private static class SearchState {
+        private CompactDigraph graph;    // the digraph searched, as of the start of the query
+        private int[] heads;             // graph.heads()
+        private final int[] marked1;     // marked1[v] == epoch iff there is an V->v path
+        private final int[] marked2;     // marked2[v] == epoch iff there is an W->v path
+        private final int[] distTo1;     // distTo1[v] = length of shortest V->v path
+        private final int[] distTo2;     // distTo2[v] = length of shortest W->v path
+        private final int[] edgeTo1;     // edgeTo1[v] = previous vertex on shortest V->v path
+        private final int[] edgeTo2;     // edgeTo2[v] = previous vertex on shortest W->v path
+        private final int[] q1;          // bfs queue from V; each vertex is enqueued at most once
+        private final int[] q2;          // bfs queue from W
+        private int head1, tail1;
+        private int head2, tail2;
+        private final boolean balanced;  // run balancedSearch() instead of search()
+        private long[] seen;             // bit i of seen[v] is set iff sources[lo + i] reaches v;
+        private long[] visit;            // of visit[v], iff it first reaches v at the current level;
+        private long[] visitNext;        // of visitNext[v], at the next level. Allocated on first use
+        private int epoch;        // marks left by earlier searches are stale
+        private int ancestor;     // the nearest ancestor of V and W
+        private int distance;     // length of the shortest path between V and W
+        private int expanded;     // vertices whose edges the last search scanned
+        private int scanned;      // edges it scanned
+        private int pruned;       // vertices it reached but did not expand, as they could not shorten the path
+        private SAPMetrics metrics;   // where run() records its searches; null if not recorded
+        private int parallelFrontier; // levels at least this large are expanded by ParallelLevel
+        private AtomicLongArray claims;  // claims[w] = stamp << 32 | i if q[i] claimed w at the level
+        private int stamp;               // stamped by the current parallel level; allocated on first use
+        private ParallelLevel parallel;  // expands every large level, reusing its buffers; allocated on first use
+        
+        // state for digraphs of up to capacity vertices, searching g first
+        SearchState(CompactDigraph g, boolean balanced, int capacity) {
+            this.balanced = balanced;
+            use(g);
+            marked1 = new int[capacity];
+            marked2 = new int[capacity];
+            distTo1 = new int[capacity];
+            distTo2 = new int[capacity];
+            edgeTo1 = new int[capacity];
+            edgeTo2 = new int[capacity];
+            q1 = new int[capacity];
+            q2 = new int[capacity];
+        }
+        
+        // searches G from now on; it must have at most as many vertices as the capacity of
+        // the state
+        private void use(CompactDigraph G) {
+            graph = G;
+            heads = G.heads();
+        }
+        
+        private void bfs(int v, int w) {
+            begin();
+            addSource1(v);
+            addSource2(w);
+            run();
+        }
         
-        Stack<Integer> s1 = new Stack<Integer>();
-        Stack<Integer> s2 = new Stack<Integer>();
+        private void bfs(int[] vSources, int[] wSources) {
+            bfs(vSources, 0, vSources.length, wSources, 0, wSources.length);
+        }
         
-        Queue<Integer> q1 = new Queue<Integer>();
-        Queue<Integer> q2 = new Queue<Integer>();
+        private void bfs(int[] vSources, int vFrom, int vTo, int[] wSources, int wFrom, int wTo) {
+            begin();
+            for (int i = vFrom; i < vTo; i++) {
+                addSource1(vSources[i]);
+            }
+            for (int i = wFrom; i < wTo; i++) {
+                addSource2(wSources[i]);
+            }
+            run();
+        }
         
-        for (int s : vSources) {
-            marked1[s] = true;
-            distTo1[s] = 0;
-            q1.enqueue(s);
-            s1.push(s);
+        private void bfs(Iterable<Integer> vSources, Iterable<Integer> wSources) {
+            begin();
+            for (int s : vSources) {
+                addSource1(s);
+            }
+            for (int s : wSources) {
+                addSource2(s);
+            }
+            run();
         }
-        for (int s : wSources) {
-            marked2[s] = true;
-            distTo2[s] = 0;
-            q2.enqueue(s);
-            s2.push(s);
+        
+        // invalidates the marks of the previous search in O(1)
+        private void begin() {
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marked1, 0);
+                Arrays.fill(marked2, 0);
+                epoch = 0;
+            }
+            epoch++;
+            head1 = 0;
+            tail1 = 0;
+            head2 = 0;
+            tail2 = 0;
+        }
+        
+        private void addSource1(int s) {
+            if (marked1[s] != epoch) {
+                marked1[s] = epoch;
+                distTo1[s] = 0;
+                q1[tail1++] = s;
+            }
         }
         
-        while (!q1.isEmpty() || !q2.isEmpty()) {
+        private void addSource2(int s) {
+            if (marked2[s] != epoch) {
+                marked2[s] = epoch;
+                distTo2[s] = 0;
+                q2[tail2++] = s;
+            }
+        }
+        
+        private void run() {
+            if (metrics == null) {
+                if (balanced) {
+                    balancedSearch();
+                } else {
+                    search();
+                }
+                return;
+            }
+            
+            long start = System.nanoTime();
+            if (balanced) {
+                balancedSearch();
+            } else {
+                search();
+            }
+            metrics.record(System.nanoTime() - start, expanded, scanned, pruned);
+        }
+        
+        // run two bfs lockstep from the sources in q1 and q2 to compute sap
+        private void search() {
+            ancestor = -1;
+            distance = -1;
+            int scannedEdges = 0;
+            int prunedVertices = 0;
             
-            if (!q1.isEmpty()) {
-                int v = q1.dequeue();
+            scanned = 0;
+            pruned = 0;
+            while (head1 < tail1 || head2 < tail2) {
                 
-                if (marked2[v]) {
-                    if (distTo1[v] + distTo2[v] < distance || distance == -1) {
-                        ancestor = v;
-                        distance = distTo1[v] +  distTo2[v];
+                if (isLargeLevel(q1, head1, tail1, distTo1)) {
+                    int tail = lockstepLevel(q1, head1, tail1, distTo1[q1[head1]], marked1, distTo1, edgeTo1,
+                                             marked2, distTo2);
+                    head1 = tail1;
+                    tail1 = tail;
+                } else if (head1 < tail1) {
+                    int v = q1[head1++];
+                    
+                    if (marked2[v] == epoch) {
+                        if (distTo1[v] + distTo2[v] < distance || distance == -1) {
+                            ancestor = v;
+                            distance = distTo1[v] +  distTo2[v];
+                        }
+                    }
+                    
+                    // stop adding new vertex to queue if the distance exceeds the length
+                    if (distTo1[v] < distance || distance == -1) {
+                        scannedEdges += graph.end(v) - graph.start(v);
+                        for (int e = graph.start(v); e < graph.end(v); e++) {
+                            int w = heads[e];
+                            if (marked1[w] != epoch) {
+                                marked1[w] = epoch;
+                                distTo1[w] = distTo1[v] + 1;
+                                edgeTo1[w] = v;
+                                q1[tail1++] = w;
+                            }
+                        }
+                    } else {
+                        prunedVertices++;
                     }
                 }
                 
-                // stop adding new vertex to queue if the distance exceeds the length
-                if (distTo1[v] < distance || distance == -1) {
-                    for (int w : g.adj(v)) {
-                        if (!marked1[w]) {
-                            marked1[w] = true;
-                            distTo1[w] = distTo1[v] + 1;
-                            q1.enqueue(w);
-                            s1.push(w);
+                if (isLargeLevel(q2, head2, tail2, distTo2)) {
+                    int tail = lockstepLevel(q2, head2, tail2, distTo2[q2[head2]], marked2, distTo2, edgeTo2,
+                                             marked1, distTo1);
+                    head2 = tail2;
+                    tail2 = tail;
+                } else if (head2 < tail2) {
+                    int v = q2[head2++];
+                    
+                    if (marked1[v] == epoch) {
+                        if (distTo1[v] +  distTo2[v] < distance || distance == -1) {
+                            ancestor = v;
+                            distance = distTo1[v] +  distTo2[v];
                         }
                     }
+                    
+                    // stop adding new vertex to queue if the distance exceeds the length
+                    if (distTo2[v] < distance || distance == -1) {
+                        scannedEdges += graph.end(v) - graph.start(v);
+                        for (int e = graph.start(v); e < graph.end(v); e++) {
+                            int w = heads[e];
+                            if (marked2[w] != epoch) {
+                                marked2[w] = epoch;
+                                distTo2[w] = distTo2[v] + 1;
+                                edgeTo2[w] = v;
+                                q2[tail2++] = w;
+                            }
+                        }
+                    } else {
+                        prunedVertices++;
+                    }
                 }
             }
-
-            if (!q2.isEmpty()) {
-                int v = q2.dequeue();
+            
+            // every vertex reached was dequeued
+            pruned += prunedVertices;
+            expanded = tail1 + tail2 - pruned;
+            scanned += scannedEdges;
+        }
+        
+        // whether q[head .. tail - 1] is one whole level, as it is when the lockstep bfs is
+        // about to dequeue its first vertex, large enough to expand in parallel and short
+        // enough to shorten the path
+        private boolean isLargeLevel(int[] q, int head, int tail, int[] distTo) {
+            return tail - head >= parallelFrontier && distTo[q[tail - 1]] == distTo[q[head]]
+                && (distance == -1 || distTo[q[head]] < distance);
+        }
+        
+        // dequeues the whole level q[head .. tail - 1] for search(): checks each vertex for a
+        // meeting as its turn would, then expands them all in parallel, unless a meeting has
+        // made the level too far to shorten the path. Vertices reached by the other side are
+        // met as they are reached too, which only finds the same paths sooner; of equally
+        // short paths the one found may differ from a sequential search. Returns the new tail of q
+        private int lockstepLevel(int[] q, int head, int tail, int level, int[] marked, int[] distTo, int[] edgeTo,
+                                  int[] otherMarked, int[] otherDistTo) {
+            for (int i = head; i < tail; i++) {
+                int v = q[i];
+                if (otherMarked[v] == epoch && (distance == -1 || level + otherDistTo[v] < distance)) {
+                    ancestor = v;
+                    distance = level + otherDistTo[v];
+                }
+            }
+            if (distance != -1 && level >= distance) {
+                pruned += tail - head;
+                return tail;
+            }
+            
+            // past the last level worth expanding only a source of the other side can still tie
+            boolean last = distance != -1 && level + 1 == distance;
+            return parallelLevel().expand(q, head, tail, level, last, marked, distTo, edgeTo,
+                                          otherMarked, otherDistTo);
+        }
+        
+        private ParallelLevel parallelLevel() {
+            if (parallel == null) {
+                parallel = new ParallelLevel();
+            }
+            return parallel;
+        }
+        
+        // run two bfs from the sources in q1 and q2 a whole level at a time, expanding the
+        // side with the smaller frontier first. A side stops when its next level is at
+        // least distance away, since no vertex on it can be on a shorter path; by then
+        // every vertex within distance - 1 of either side has been reached by it, so every
+        // common vertex on a shortest path has been met. Of several shortest paths, the one
+        // through the smallest ancestor id is kept, as the ancestor index does.
+        private void balancedSearch() {
+            ancestor = -1;
+            distance = -1;
+            expanded = 0;
+            scanned = 0;
+            for (int i = 0; i < tail2; i++) {
+                if (marked1[q2[i]] == epoch) {
+                    meet(q2[i], 0);
+                }
+            }
+            
+            int level1 = 0;    // distance of the vertices in q1[head1 .. tail1 - 1]
+            int level2 = 0;
+            while (true) {
+                boolean more1 = head1 < tail1 && (distance == -1 || level1 < distance);
+                boolean more2 = head2 < tail2 && (distance == -1 || level2 < distance);
+                if (!more1 && !more2) {
+                    // the levels left are cut off
+                    pruned = tail1 - head1 + tail2 - head2;
+                    break;
+                }
                 
-                if (marked1[v]) {
-                    if (distTo1[v] +  distTo2[v] < distance || distance == -1) {
-                        ancestor = v;
-                        distance = distTo1[v] +  distTo2[v];
+                if (more1 && (!more2 || tail1 - head1 <= tail2 - head2)) {
+                    int tail = expandLevel(q1, head1, tail1, level1, marked1, distTo1, edgeTo1, marked2, distTo2);
+                    head1 = tail1;
+                    tail1 = tail;
+                    level1++;
+                } else {
+                    int tail = expandLevel(q2, head2, tail2, level2, marked2, distTo2, edgeTo2, marked1, distTo1);
+                    head2 = tail2;
+                    tail2 = tail;
+                    level2++;
+                }
+            }
+        }
+        
+        // reaches the vertices one edge beyond the level q[head .. tail - 1] of one side,
+        // meeting those the other side has reached; returns the new tail of q
+        private int expandLevel(int[] q, int head, int tail, int level, int[] marked, int[] distTo, int[] edgeTo,
+                                int[] otherMarked, int[] otherDistTo) {
+            // past the last level worth expanding only a source of the other side can still tie
+            boolean last = distance != -1 && level + 1 == distance;
+            if (tail - head >= parallelFrontier) {
+                return parallelLevel().expand(q, head, tail, level, last, marked, distTo, edgeTo,
+                                              otherMarked, otherDistTo);
+            }
+            
+            int next = tail;
+            expanded += tail - head;
+            for (int i = head; i < tail; i++) {
+                int v = q[i];
+                scanned += graph.end(v) - graph.start(v);
+                for (int e = graph.start(v); e < graph.end(v); e++) {
+                    int w = heads[e];
+                    if (marked[w] == epoch || (last && otherMarked[w] != epoch)) {
+                        continue;
+                    }
+                    marked[w] = epoch;
+                    distTo[w] = level + 1;
+                    edgeTo[w] = v;
+                    if (!last) {
+                        q[next++] = w;
+                    }
+                    if (otherMarked[w] == epoch) {
+                        meet(w, level + 1 + otherDistTo[w]);
                     }
                 }
+            }
+            return next;
+        }
+        
+        // keeps the path of length d through x if it is shorter, or as short with a smaller ancestor id
+        private void meet(int x, int d) {
+            if (d < distance || distance == -1 || (d == distance && x < ancestor)) {
+                ancestor = x;
+                distance = d;
+            }
+        }
+        
+        // expandLevel() of a large level, split into chunks of CHUNK vertices expanded by
+        // fork-join tasks in two passes. The first claims each vertex w not reached yet for
+        // the first position i in the level with an edge to it, by an atomic minimum on
+        // claims[w]; the second has the vertex at q[i] reach the vertices it claimed, each
+        // chunk into its own list. Since the lists are then appended in chunk order, q,
+        // distTo and edgeTo end up exactly as expandLevel() leaves them, and the ancestor
+        // too, as meet() does not depend on the order of the meetings. One instance serves
+        // every level of its search state, so the per-chunk buffers grow to the largest level
+        // seen and are not allocated again.
+        private final class ParallelLevel {
+            private static final int CHUNK = 2048;
+            
+            private int[] q;
+            private int head, tail;
+            private int level;
+            private boolean last;
+            private int[] marked, distTo, edgeTo;
+            private int[] otherMarked, otherDistTo;
+            private int chunks;                          // chunks of the current level
+            private int[][] reached = new int[0][];      // reached[c] = vertices reached by chunk c, in order
+            private int[] reachedCount = new int[0];
+            private int[] scannedEdges = new int[0];     // edges scanned by chunk c
+            private int[] meetAt = new int[0];           // best meeting of chunk c, or -1
+            private int[] meetDistance = new int[0];
+            
+            // expands the level q[head .. tail - 1] as expandLevel() would and returns the new tail of q
+            int expand(int[] q, int head, int tail, int level, boolean last, int[] marked, int[] distTo,
+                       int[] edgeTo, int[] otherMarked, int[] otherDistTo) {
+                this.q = q;
+                this.head = head;
+                this.tail = tail;
+                this.level = level;
+                this.last = last;
+                this.marked = marked;
+                this.distTo = distTo;
+                this.edgeTo = edgeTo;
+                this.otherMarked = otherMarked;
+                this.otherDistTo = otherDistTo;
+                chunks = (tail - head + CHUNK - 1) / CHUNK;
+                if (chunks > reached.length) {
+                    reached = Arrays.copyOf(reached, chunks);
+                    reachedCount = new int[chunks];
+                    scannedEdges = new int[chunks];
+                    meetAt = new int[chunks];
+                    meetDistance = new int[chunks];
+                }
                 
-                // stop adding new vertex to queue if the distance exceeds the length
-                if (distTo2[v] < distance || distance == -1) {
-                    for (int w : g.adj(v)) {
-                        if (!marked2[w]) {
-                            marked2[w] = true;
-                            distTo2[w] = distTo2[v] + 1;
-                            q2.enqueue(w);
-                            s2.push(w);
+                if (claims == null) {
+                    claims = new AtomicLongArray(marked1.length);
+                }
+                if (stamp == Integer.MAX_VALUE) {
+                    claims = new AtomicLongArray(marked1.length);
+                    stamp = 0;
+                }
+                stamp++;
+                
+                new ChunksTask(this, 0, chunks, true).invoke();
+                new ChunksTask(this, 0, chunks, false).invoke();
+                
+                int next = tail;
+                expanded += tail - head;
+                for (int c = 0; c < chunks; c++) {
+                    System.arraycopy(reached[c], 0, q, next, reachedCount[c]);
+                    next += reachedCount[c];
+                    scanned += scannedEdges[c];
+                    if (meetAt[c] != -1) {
+                        meet(meetAt[c], meetDistance[c]);
+                    }
+                }
+                return next;
+            }
+            
+            // first pass: q[i] claims the unreached vertices it has an edge to, unless an
+            // earlier vertex of the level has
+            void claim(int c) {
+                int from = head + c * CHUNK;
+                int to = Math.min(tail, from + CHUNK);
+                long stamped = (long) stamp << 32;
+                for (int i = from; i < to; i++) {
+                    int v = q[i];
+                    for (int e = graph.start(v); e < graph.end(v); e++) {
+                        int w = heads[e];
+                        if (marked[w] == epoch || (last && otherMarked[w] != epoch)) {
+                            continue;
+                        }
+                        while (true) {
+                            long claim = claims.get(w);
+                            if ((claim & 0xFFFFFFFF00000000L) == stamped && (int) claim <= i) {
+                                break;
+                            }
+                            if (claims.compareAndSet(w, claim, stamped | i)) {
+                                break;
+                            }
                         }
                     }
                 }
             }
+            
+            // second pass: q[i] reaches the vertices it claimed, in edge order. Only the
+            // claimant writes to marked[w], distTo[w] and edgeTo[w]
+            void reach(int c) {
+                int from = head + c * CHUNK;
+                int to = Math.min(tail, from + CHUNK);
+                long stamped = (long) stamp << 32;
+                int[] list = reached[c] != null ? reached[c] : new int[16];
+                int count = 0;
+                int edges = 0;
+                int at = -1;
+                int best = -1;
+                for (int i = from; i < to; i++) {
+                    int v = q[i];
+                    edges += graph.end(v) - graph.start(v);
+                    for (int e = graph.start(v); e < graph.end(v); e++) {
+                        int w = heads[e];
+                        // a parallel edge to w finds it marked
+                        if (claims.get(w) != (stamped | i) || marked[w] == epoch) {
+                            continue;
+                        }
+                        marked[w] = epoch;
+                        distTo[w] = level + 1;
+                        edgeTo[w] = v;
+                        if (!last) {
+                            if (count == list.length) {
+                                list = Arrays.copyOf(list, 2 * count);
+                            }
+                            list[count++] = w;
+                        }
+                        if (otherMarked[w] == epoch) {
+                            int d = level + 1 + otherDistTo[w];
+                            if (at == -1 || d < best || (d == best && w < at)) {
+                                at = w;
+                                best = d;
+                            }
+                        }
+                    }
+                }
+                reached[c] = list;
+                reachedCount[c] = count;
+                scannedEdges[c] = edges;
+                meetAt[c] = at;
+                meetDistance[c] = best;
+            }
         }
         
-        // reinitialize auxiliary array for next bfs
-        while (!s1.isEmpty()) {
-            int v = s1.pop();
-            marked1[v] = false;
-            distTo1[v] = 0;
+        // chunks lo..hi-1 of a ParallelLevel, split in halves down to single chunks
+        @SuppressWarnings("serial")
+        private static final class ChunksTask extends RecursiveAction {
+            private final ParallelLevel level;
+            private final int lo, hi;
+            private final boolean claim;   // true for the first pass, false for the second
+            
+            ChunksTask(ParallelLevel level, int lo, int hi, boolean claim) {
+                this.level = level;
+                this.lo = lo;
+                this.hi = hi;
+                this.claim = claim;
+            }
+            
+            @Override
+            protected void compute() {
+                if (hi - lo > 1) {
+                    int mid = (lo + hi) >>> 1;
+                    invokeAll(new ChunksTask(level, lo, mid, claim), new ChunksTask(level, mid, hi, claim));
+                } else if (hi - lo == 1) {
+                    if (claim) {
+                        level.claim(lo);
+                    } else {
+                        level.reach(lo);
+                    }
+                }
+            }
         }
-        while (!s2.isEmpty()) {
-            int v = s2.pop();
-            marked2[v] = false;
-            distTo2[v] = 0;
+        
+        // lengths[i] for lo <= i < hi of lengths(sources, target), with at most 64 source sets:
+        // a full bfs from the target, then one multi-source bfs (MS-BFS) in which each vertex
+        // carries the set of source sets that reach it as the bits of a long, so that every
+        // edge is scanned once per level for all of them. A set stops spreading once the next
+        // level cannot shorten its path to the target.
+        private void multiSourceBfs(int[][] sources, int lo, int hi, int[] target, int[] lengths) {
+            if (seen == null) {
+                seen = new long[marked1.length];
+                visit = new long[marked1.length];
+                visitNext = new long[marked1.length];
+            }
+            
+            // distTo2[x] = length of shortest target->x path, for every x marked2
+            begin();
+            for (int t : target) {
+                addSource2(t);
+            }
+            while (head2 < tail2) {
+                int v = q2[head2++];
+                for (int e = graph.start(v); e < graph.end(v); e++) {
+                    int w = heads[e];
+                    if (marked2[w] != epoch) {
+                        marked2[w] = epoch;
+                        distTo2[w] = distTo2[v] + 1;
+                        q2[tail2++] = w;
+                    }
+                }
+            }
+            
+            // the frontier of a level is frontier[0 .. size - 1]; a vertex is in it once
+            // for each level at which some set first reaches it. q2 is free again.
+            int[] frontier = q1;
+            int[] nextFrontier = q2;
+            int size = 0;
+            for (int i = lo; i < hi; i++) {
+                lengths[i] = -1;
+                for (int s : sources[i]) {
+                    touch(s);
+                    if (visit[s] == 0) {
+                        frontier[size++] = s;
+                    }
+                    visit[s] |= 1L << (i - lo);
+                    seen[s] |= 1L << (i - lo);
+                }
+            }
+            
+            for (int level = 0; size > 0; level++) {
+                for (int k = 0; k < size; k++) {
+                    int v = frontier[k];
+                    if (marked2[v] == epoch) {
+                        for (long bits = visit[v]; bits != 0; bits &= bits - 1) {
+                            int i = lo + Long.numberOfTrailingZeros(bits);
+                            if (level + distTo2[v] < lengths[i] || lengths[i] == -1) {
+                                lengths[i] = level + distTo2[v];
+                            }
+                        }
+                    }
+                }
+                
+                long active = 0;
+                for (int i = lo; i < hi; i++) {
+                    if (lengths[i] == -1 || level + 1 < lengths[i]) {
+                        active |= 1L << (i - lo);
+                    }
+                }
+                if (active == 0) {
+                    break;
+                }
+                
+                int nextSize = 0;
+                for (int k = 0; k < size; k++) {
+                    int v = frontier[k];
+                    long bits = visit[v] & active;
+                    visit[v] = 0;
+                    for (int e = graph.start(v); bits != 0 && e < graph.end(v); e++) {
+                        int w = heads[e];
+                        touch(w);
+                        long reached = bits & ~seen[w];
+                        if (reached != 0) {
+                            seen[w] |= reached;
+                            if (visitNext[w] == 0) {
+                                nextFrontier[nextSize++] = w;
+                            }
+                            visitNext[w] |= reached;
+                        }
+                    }
+                }
+                
+                int[] swapFrontier = frontier;
+                frontier = nextFrontier;
+                nextFrontier = swapFrontier;
+                size = nextSize;
+                long[] swapVisit = visit;
+                visit = visitNext;
+                visitNext = swapVisit;
+            }
+        }
+        
+        // clears the masks of v the first time the current search reaches it
+        private void touch(int v) {
+            if (marked1[v] != epoch) {
+                marked1[v] = epoch;
+                seen[v] = 0;
+                visit[v] = 0;
+                visitNext[v] = 0;
+            }
+        }
+        
+        // full bfs from the sources, without the early cutoff, returning every vertex
+        // reached as (vertex << 32 | distance) sorted by vertex
+        private long[] ancestors(int[] sources) {
+            begin();
+            for (int s : sources) {
+                addSource1(s);
+            }
+            
+            while (head1 < tail1) {
+                int v = q1[head1++];
+                for (int e = graph.start(v); e < graph.end(v); e++) {
+                    int w = heads[e];
+                    if (marked1[w] != epoch) {
+                        marked1[w] = epoch;
+                        distTo1[w] = distTo1[v] + 1;
+                        q1[tail1++] = w;
+                    }
+                }
+            }
+            
+            long[] reached = new long[tail1];
+            for (int i = 0; i < tail1; i++) {
+                reached[i] = ((long) q1[i] << 32) | distTo1[q1[i]];
+            }
+            Arrays.sort(reached);
+            return reached;
+        }
+        
+        // vertices of the shortest ancestral path found by the last bfs
+        private int[] path() {
+            if (ancestor == -1) {
+                return new int[0];
+            }
+            
+            int[] path = new int[distance + 1];
+            int i = distTo1[ancestor];
+            for (int x = ancestor; i >= 0; x = edgeTo1[x]) {
+                path[i--] = x;
+            }
+            i = distTo1[ancestor];
+            for (int x = ancestor; i < path.length; x = edgeTo2[x]) {
+                path[i++] = x;
+            }
+            return path;
+        }
+    }
+    
+    private void validateVertex(int v) {
+        if (v < 0 || v >= g.V()) {
+            throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (g.V() - 1) + ".");
         }
     }
     
@@ -156,9 +1512,30 @@ public class SAP {
                 throw new IllegalArgumentException("vertex cannot be null.");
             }
             
-            if (v < 0 || v >= g.V()) {
-                throw new IllegalArgumentException("vertex " + v + " is not between 0 and " + (g.V() - 1) + ".");
-            }
+            validateVertex(v);
+        }
+    }
+    
+    private void validateVertices(int[] vertices) {
+        if (vertices == null) {
+            throw new IllegalArgumentException("vertices cannot be null.");
+        }
+        
+        for (int v : vertices) {
+            validateVertex(v);
+        }
+    }
+    
+    private void validateVertices(int[] vertices, int from, int to) {
+        if (vertices == null) {
+            throw new IllegalArgumentException("vertices cannot be null.");
+        }
+        if (from < 0 || from > to || to > vertices.length) {
+            throw new IllegalArgumentException("slice [" + from + ", " + to + ") is out of bounds.");
+        }
+        
+        for (int i = from; i < to; i++) {
+            validateVertex(vertices[i]);
         }
     }
     
@@ -176,4 +1553,4 @@ public class SAP {
             StdOut.printf("length = %d, ancestor = %d\n", length, ancestor);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,325 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// bounded least-recently-used cache of shortest ancestral paths keyed by the
+// unordered pair of source sets; safe for use by concurrent queries. The entries
+// are spread over segments by hash, each with its own lock and its share of the
+// capacity, so that queries on different keys rarely wait for each other. An entry
+// holds the length and ancestor, packed by AncestorIndex.pack(), and the path itself
+// only once a query has asked for it.
+class SAPCache {
+    static final long MISS = Long.MIN_VALUE;  // result() of a query not cached
+    
+    private static final int MIN_SEGMENT_CAPACITY = 64;  // so that small caches stay exact LRU
+    private static final int MAX_SEGMENTS = 16;
+    
+    private final int capacity;
+    private final Segment[] segments;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final AtomicLong generation;   // number of invalidations
+    
+    SAPCache(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive.");
+        }
+        
+        this.capacity = capacity;
+        int n = Math.max(1, Math.min(MAX_SEGMENTS, Integer.highestOneBit(capacity / MIN_SEGMENT_CAPACITY)));
+        this.segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            segments[i] = new Segment(capacity / n + (i < capacity % n ? 1 : 0));
+        }
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.generation = new AtomicLong();
+    }
+    
+    // cached length and ancestor of the path between v and w, packed; MISS if not cached
+    long result(int v, int w) {
+        return result(new PairKey(v, w));
+    }
+    
+    // cached length and ancestor of the path between the normalized sets v and w,
+    // packed; MISS if not cached
+    long result(int[] v, int[] w) {
+        return result(key(v, w));
+    }
+    
+    private long result(Key key) {
+        Segment segment = segmentOf(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+        }
+        
+        if (entry == null) {
+            misses.increment();
+            return MISS;
+        }
+        hits.increment();
+        return entry.result;
+    }
+    
+    // cached path from the normalized set v to the normalized set w, or null if not cached
+    AncestralPath path(int[] v, int[] w) {
+        Key key = key(v, w);
+        Segment segment = segmentOf(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+        }
+        
+        if (entry == null || entry.path == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        
+        // paths are stored in the orientation of the key
+        return key.swapped ? entry.path.reverse() : entry.path;
+    }
+    
+    // caches the packed length and ancestor of the path between v and w, found by a
+    // search that started when generation() was generation; dropped if the cache has been
+    // invalidated since
+    void putResult(int v, int w, long result, long generation) {
+        put(new PairKey(v, w), new Entry(result, null), generation);
+    }
+    
+    // caches the packed length and ancestor of the path between the normalized sets v
+    // and w, like putResult(int, int, long, long)
+    void putResult(int[] v, int[] w, long result, long generation) {
+        put(key(v, w), new Entry(result, null), generation);
+    }
+    
+    // caches the path from the normalized set v to the normalized set w
+    void putPath(int[] v, int[] w, AncestralPath path) {
+        putPath(v, w, path, generation());
+    }
+    
+    // caches the path from the normalized set v to the normalized set w, with its length
+    // and ancestor, like putResult(int[], int[], long, long)
+    void putPath(int[] v, int[] w, AncestralPath path, long generation) {
+        Key key = key(v, w);
+        AncestralPath stored = key.swapped ? path.reverse() : path;
+        put(key, new Entry(AncestorIndex.pack(path.length(), path.ancestor()), stored), generation);
+    }
+    
+    // a path is never replaced by the bare result of the same query
+    private void put(Key key, Entry entry, long generation) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            if (generation != this.generation.get()) {
+                return;
+            }
+            Entry current = segment.get(key);
+            if (current == null || entry.path != null) {
+                segment.put(key, entry);
+            }
+        }
+    }
+    
+    long generation() {
+        return generation.get();
+    }
+    
+    // removes every entry with a vertex x in either set such that affected[x]. The
+    // generation moves first, so a search that started before this call cannot put its
+    // result back into a segment already cleaned
+    void invalidate(boolean[] affected) {
+        generation.incrementAndGet();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Key> keys = segment.keySet().iterator();
+                while (keys.hasNext()) {
+                    if (keys.next().touches(affected)) {
+                        keys.remove();
+                    }
+                }
+            }
+        }
+    }
+    
+    int capacity() {
+        return capacity;
+    }
+    
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+    
+    long hits() {
+        return hits.sum();
+    }
+    
+    long misses() {
+        return misses.sum();
+    }
+    
+    // sorted, duplicate free copy of a vertex set
+    static int[] normalize(int[] vertices) {
+        int[] sorted = vertices.clone();
+        Arrays.sort(sorted);
+        
+        int k = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (k == 0 || sorted[k - 1] != sorted[i]) {
+                sorted[k++] = sorted[i];
+            }
+        }
+        return k == sorted.length ? sorted : Arrays.copyOf(sorted, k);
+    }
+    
+    // picked by the top bits of the hash scrambled by a multiplication, since the hashes
+    // of nearby pairs differ only in their low bits
+    private Segment segmentOf(Key key) {
+        int hash = key.hash * 0x9E3779B9;
+        return segments[(hash >>> 24) & (segments.length - 1)];
+    }
+    
+    // two single vertices share the key of the scalar query on them
+    private static Key key(int[] v, int[] w) {
+        if (v.length == 1 && w.length == 1) {
+            return new PairKey(v[0], w[0]);
+        }
+        return new SetsKey(v, w);
+    }
+    
+    // least recently used entries of one segment, guarded by the segment itself
+    @SuppressWarnings("serial")
+    private static final class Segment extends LinkedHashMap<Key, Entry> {
+        private final int capacity;
+        
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > capacity;
+        }
+    }
+    
+    // packed length and ancestor, and the path in the orientation of the key; null until asked for
+    private static final class Entry {
+        private final long result;
+        private final AncestralPath path;
+        
+        Entry(long result, AncestralPath path) {
+            this.result = result;
+            this.path = path;
+        }
+    }
+    
+    // unordered pair of vertex sets
+    private abstract static class Key {
+        final boolean swapped;  // true if w sorts before v
+        final int hash;
+        
+        Key(boolean swapped, int hash) {
+            this.swapped = swapped;
+            this.hash = hash;
+        }
+        
+        abstract boolean touches(boolean[] affected);
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+    
+    // unordered pair of single vertices
+    private static final class PairKey extends Key {
+        private final int first;
+        private final int second;
+        
+        PairKey(int v, int w) {
+            super(v > w, 31 * Math.min(v, w) + Math.max(v, w));
+            first = Math.min(v, w);
+            second = Math.max(v, w);
+        }
+        
+        @Override
+        boolean touches(boolean[] affected) {
+            return (first < affected.length && affected[first]) || (second < affected.length && affected[second]);
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof PairKey)) {
+                return false;
+            }
+            PairKey that = (PairKey) other;
+            return first == that.first && second == that.second;
+        }
+    }
+    
+    // unordered pair of normalized vertex sets, not both single vertices
+    private static final class SetsKey extends Key {
+        private final int[] first;
+        private final int[] second;
+        
+        SetsKey(int[] v, int[] w) {
+            this(v, w, compare(v, w) > 0);
+        }
+        
+        private SetsKey(int[] v, int[] w, boolean swapped) {
+            super(swapped, 31 * Arrays.hashCode(swapped ? w : v) + Arrays.hashCode(swapped ? v : w));
+            first = swapped ? w : v;
+            second = swapped ? v : w;
+        }
+        
+        @Override
+        boolean touches(boolean[] affected) {
+            for (int v : first) {
+                if (v < affected.length && affected[v]) {
+                    return true;
+                }
+            }
+            for (int v : second) {
+                if (v < affected.length && affected[v]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private static int compare(int[] a, int[] b) {
+            int n = Math.min(a.length, b.length);
+            for (int i = 0; i < n; i++) {
+                if (a[i] != b[i]) {
+                    return a[i] < b[i] ? -1 : 1;
+                }
+            }
+            return a.length - b.length;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof SetsKey)) {
+                return false;
+            }
+            SetsKey that = (SetsKey) other;
+            return hash == that.hash && Arrays.equals(first, that.first) && Arrays.equals(second, that.second);
+        }
+    }
+}
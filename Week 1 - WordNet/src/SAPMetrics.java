@@ -0,0 +1,187 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// counts of the work done by the bfs searches of a SAP, and a histogram of their
+// latencies. The histogram is log-linear, as HdrHistogram's: each power of two is
+// split into SUB_BUCKETS equal buckets, so a percentile is reported within 1/8 of its
+// value using a fixed 4 KB of counters. Recording is lock-free; snapshot() may see a
+// search that is being recorded in some counters and not yet in others.
+public class SAPMetrics implements SAPMetricsMXBean {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+    
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder expanded = new LongAdder();   // vertices whose edges were scanned
+    private final LongAdder scanned = new LongAdder();    // edges scanned
+    private final LongAdder pruned = new LongAdder();     // vertices reached but not expanded by the cutoff
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+    
+    SAPMetrics() { }
+    
+    // records one search
+    void record(long nanos, int expandedVertices, int scannedEdges, int prunedVertices) {
+        searches.increment();
+        expanded.add(expandedVertices);
+        scanned.add(scannedEdges);
+        pruned.add(prunedVertices);
+        totalNanos.add(nanos);
+        latencies.incrementAndGet(bucket(nanos));
+    }
+    
+    // the counts and latencies recorded so far
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = latencies.get(i);
+        }
+        return new Snapshot(searches.sum(), expanded.sum(), scanned.sum(), pruned.sum(), totalNanos.sum(), counts);
+    }
+    
+    // registers these metrics with the platform MBean server under
+    // SAP:type=SAPMetrics,name=<name>, and returns the name registered
+    public ObjectName register(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("name cannot be null.");
+        }
+        
+        try {
+            ObjectName objectName = ObjectName.getInstance("SAP:type=SAPMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException("could not register metrics " + name, e);
+        }
+    }
+    
+    @Override
+    public long getSearches() {
+        return searches.sum();
+    }
+    
+    @Override
+    public long getVerticesExpanded() {
+        return expanded.sum();
+    }
+    
+    @Override
+    public long getEdgesScanned() {
+        return scanned.sum();
+    }
+    
+    @Override
+    public long getVerticesPruned() {
+        return pruned.sum();
+    }
+    
+    @Override
+    public long getLatencyMedianNanos() {
+        return snapshot().latencyPercentile(50.0);
+    }
+    
+    @Override
+    public long getLatency99Nanos() {
+        return snapshot().latencyPercentile(99.0);
+    }
+    
+    @Override
+    public long getLatencyMaxNanos() {
+        return snapshot().latencyPercentile(100.0);
+    }
+    
+    // values below SUB_BUCKETS have a bucket each; above, the bucket is given by the
+    // position of the highest bit and the SUB_BITS bits below it
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+    
+    // largest value in the bucket
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lowest = (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+    
+    // immutable view of the metrics at one time
+    public static final class Snapshot {
+        private final long searches;
+        private final long expanded;
+        private final long scanned;
+        private final long pruned;
+        private final long totalNanos;
+        private final long[] counts;   // searches in each latency bucket
+        
+        private Snapshot(long searches, long expanded, long scanned, long pruned, long totalNanos, long[] counts) {
+            this.searches = searches;
+            this.expanded = expanded;
+            this.scanned = scanned;
+            this.pruned = pruned;
+            this.totalNanos = totalNanos;
+            this.counts = counts;
+        }
+        
+        // number of searches recorded
+        public long searches() {
+            return searches;
+        }
+        
+        // vertices whose edges were scanned, over all searches
+        public long verticesExpanded() {
+            return expanded;
+        }
+        
+        // edges scanned, over all searches
+        public long edgesScanned() {
+            return scanned;
+        }
+        
+        // vertices reached but not expanded because they could not shorten the path
+        // already found, over all searches
+        public long verticesPruned() {
+            return pruned;
+        }
+        
+        // mean latency of a search in nanoseconds; 0 if there were none
+        public double meanLatencyNanos() {
+            return searches == 0 ? 0.0 : (double) totalNanos / searches;
+        }
+        
+        // latency in nanoseconds that percentile percent of the searches did not exceed,
+        // within 1/8 of its value; 0 if there were none
+        public long latencyPercentile(double percentile) {
+            if (percentile < 0.0 || percentile > 100.0) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100.");
+            }
+            
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValue(i);
+                }
+            }
+            return highestValue(counts.length - 1);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+// the SAPMetrics attributes readable over JMX
+public interface SAPMetricsMXBean {
+    long getSearches();
+    
+    long getVerticesExpanded();
+    
+    long getEdgesScanned();
+    
+    long getVerticesPruned();
+    
+    long getLatencyMedianNanos();
+    
+    long getLatency99Nanos();
+    
+    long getLatencyMaxNanos();
+}
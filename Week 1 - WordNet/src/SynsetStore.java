@@ -0,0 +1,180 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// synonym sets of all synsets as UTF-8 bytes outside the Java heap, in a direct or
+// memory-mapped buffer, with an offset table indexed by synset id. A synonym set is
+// decoded to a String only when it is asked for. Synsets added or changed after
+// construction are kept on the heap until compacted() moves them off it, in a map
+// copied on write and published whole, so lookups may run while a synset is put.
+class SynsetStore {
+    private final ByteBuffer text;   // synonym set of id is at [start[id], start[id + 1]) in text
+    private final int[] start;
+    private volatile Changes changes;   // synonym sets put since construction; replaced, never modified
+    
+    // store over text, which must not be modified afterwards
+    SynsetStore(ByteBuffer text, int[] start) {
+        if (start.length == 0 || start[0] != 0 || start[start.length - 1] > text.limit()) {
+            throw new IllegalArgumentException("offsets do not match text.");
+        }
+        for (int id = 0; id < start.length - 1; id++) {
+            if (start[id] > start[id + 1]) {
+                throw new IllegalArgumentException("offsets must be nondecreasing.");
+            }
+        }
+        this.text = text;
+        this.start = start;
+        this.changes = new Changes(Collections.<Integer, String>emptyMap(), start.length - 1);
+    }
+    
+    // number of synsets
+    int size() {
+        return changes.size;
+    }
+    
+    // number of bytes of text in the buffer, not counting synonym sets put since construction
+    int byteSize() {
+        return start[start.length - 1];
+    }
+    
+    // synonym set of the synset id
+    String get(int id) {
+        Changes changes = this.changes;
+        if (id < 0 || id >= changes.size) {
+            throw new IllegalArgumentException("synset " + id + " is not between 0 and " + (changes.size - 1) + ".");
+        }
+        if (!changes.sets.isEmpty()) {
+            String synonymSet = changes.sets.get(id);
+            if (synonymSet != null) {
+                return synonymSet;
+            }
+        }
+        
+        // absolute get, so concurrent readers do not share a position
+        byte[] bytes = new byte[start[id + 1] - start[id]];
+        text.get(start[id], bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // whether the synonym set of synset id has been put since construction
+    boolean changed(int id) {
+        Map<Integer, String> sets = changes.sets;
+        return !sets.isEmpty() && sets.containsKey(id);
+    }
+    
+    // sets the synonym set of synset id, adding the synset if id is size(). Puts must not
+    // run concurrently with each other; WordNet serializes them
+    void put(int id, String synonymSet) {
+        Changes before = changes;
+        if (id < 0 || id > before.size) {
+            throw new IllegalArgumentException("synset " + id + " is not between 0 and " + before.size + ".");
+        }
+        Map<Integer, String> sets = new HashMap<Integer, String>(before.sets);
+        sets.put(id, synonymSet);
+        changes = new Changes(sets, Math.max(before.size, id + 1));
+    }
+    
+    // store of the same synonym sets with none kept on the heap
+    SynsetStore compacted() {
+        if (changes.sets.isEmpty()) {
+            return this;
+        }
+        
+        Builder builder = new Builder();
+        for (int id = 0; id < size(); id++) {
+            builder.add(id, get(id));
+        }
+        return builder.build();
+    }
+    
+    // offset table, then the text, with the synonym sets put since construction folded in
+    void write(DataOutputStream out) throws IOException {
+        if (!changes.sets.isEmpty()) {
+            compacted().write(out);
+            return;
+        }
+        for (int offset : start) {
+            out.writeInt(offset);
+        }
+        byte[] chunk = new byte[1 << 16];
+        for (int i = 0; i < byteSize(); i += chunk.length) {
+            int n = Math.min(chunk.length, byteSize() - i);
+            text.get(i, chunk, 0, n);
+            out.write(chunk, 0, n);
+        }
+    }
+    
+    // collects synonym sets, in any order of synset id, before they are moved off the heap
+    static class Builder {
+        private byte[] bytes = new byte[1 << 12];
+        private int byteCount;
+        private int[] from = new int[16];   // synonym set of id is at [from[id], to[id]) in bytes
+        private int[] to = new int[16];
+        private boolean[] added = new boolean[16];
+        private int size;                   // 1 + largest id added
+        
+        void add(int id, String synonymSet) {
+            byte[] encoded = synonymSet.getBytes(StandardCharsets.UTF_8);
+            add(id, encoded, 0, encoded.length);
+        }
+        
+        // adds the synonym set already encoded as UTF-8 in utf8[offset .. offset + length - 1]
+        void add(int id, byte[] utf8, int offset, int length) {
+            if (id < 0) {
+                throw new IllegalArgumentException("synset id cannot be negative.");
+            }
+            if (id >= added.length) {
+                int capacity = Math.max(2 * added.length, id + 1);
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                added = Arrays.copyOf(added, capacity);
+            }
+            if (added[id]) {
+                throw new IllegalArgumentException("synset " + id + " is defined twice.");
+            }
+            
+            if (byteCount + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, byteCount + length));
+            }
+            System.arraycopy(utf8, offset, bytes, byteCount, length);
+            from[id] = byteCount;
+            byteCount += length;
+            to[id] = byteCount;
+            added[id] = true;
+            size = Math.max(size, id + 1);
+        }
+        
+        // copies the synonym sets into a direct buffer in order of synset id
+        SynsetStore build() {
+            for (int id = 0; id < size; id++) {
+                if (!added[id]) {
+                    throw new IllegalArgumentException("synset " + id + " is missing.");
+                }
+            }
+            
+            ByteBuffer text = ByteBuffer.allocateDirect(byteCount);
+            int[] start = new int[size + 1];
+            for (int id = 0; id < size; id++) {
+                text.put(bytes, from[id], to[id] - from[id]);
+                start[id + 1] = text.position();
+            }
+            return new SynsetStore(text, start);
+        }
+    }
+    
+    // synonym sets put since construction, and the number of synsets; never modified once published
+    private static final class Changes {
+        private final Map<Integer, String> sets;
+        private final int size;
+        
+        Changes(Map<Integer, String> sets, int size) {
+            this.sets = sets;
+            this.size = size;
+        }
+    }
+}
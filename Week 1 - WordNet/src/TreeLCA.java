@@ -0,0 +1,212 @@
+import java.util.Arrays;
+
+// lowest common ancestor index of a digraph in which every vertex has at most one
+// edge, to its parent: a forest with the edges pointing to the roots. The shortest
+// ancestral path between v and w goes through their lowest common ancestor, found as
+// the shallowest vertex between their first visits in an Euler tour of the tree, and
+// a sparse table answers that range minimum in O(1) time.
+class TreeLCA {
+    // multi-source queries try every pair of sources up to this many pairs
+    static final int MAX_PAIRS = 4096;
+    
+    private final int[] parent;   // parent[v] = the head of the edge leaving v; -1 for a root
+    private final int[] depth;    // number of edges from v to its root
+    private final int[] root;     // root of the tree containing v
+    private final int[] first;    // index in the Euler tour of the first visit to v
+    private final int[][] sparse; // sparse[k][i] = shallowest vertex in tour[i .. i + 2^k - 1]
+    
+    private TreeLCA(int[] parent, int[] depth, int[] root, int[] first, int[][] sparse) {
+        this.parent = parent;
+        this.depth = depth;
+        this.root = root;
+        this.first = first;
+        this.sparse = sparse;
+    }
+    
+    // the index of G if G is a forest; null if a vertex has two edges or G has a cycle
+    static TreeLCA of(CompactDigraph G) {
+        int V = G.V();
+        int[] heads = G.heads();
+        int[] parent = new int[V];
+        for (int v = 0; v < V; v++) {
+            if (G.end(v) - G.start(v) > 1) {
+                return null;
+            }
+            parent[v] = G.end(v) > G.start(v) ? heads[G.start(v)] : -1;
+        }
+        
+        // children of each vertex, in compressed sparse row form
+        int[] childStart = new int[V + 2];
+        for (int v = 0; v < V; v++) {
+            if (parent[v] != -1) {
+                childStart[parent[v] + 2]++;
+            }
+        }
+        for (int v = 0; v < V; v++) {
+            childStart[v + 2] += childStart[v + 1];
+        }
+        int[] children = new int[V];
+        for (int v = 0; v < V; v++) {
+            if (parent[v] != -1) {
+                children[childStart[parent[v] + 1]++] = v;
+            }
+        }
+        
+        // Euler tour of each tree from its root, without recursion: a vertex is listed
+        // when first visited and again after each of its children. A vertex on a cycle
+        // is never visited from a root.
+        int[] depth = new int[V];
+        int[] root = new int[V];
+        int[] first = new int[V];
+        int[] tour = new int[Math.max(1, 2 * V)];
+        int length = 0;
+        int[] stack = new int[V];
+        int[] nextChild = new int[V];
+        int visited = 0;
+        for (int r = 0; r < V; r++) {
+            if (parent[r] != -1) {
+                continue;
+            }
+            int top = 0;
+            stack[top++] = r;
+            nextChild[r] = childStart[r];
+            first[r] = length;
+            tour[length++] = r;
+            root[r] = r;
+            visited++;
+            while (top > 0) {
+                int v = stack[top - 1];
+                if (nextChild[v] < childStart[v + 1]) {
+                    int c = children[nextChild[v]++];
+                    depth[c] = depth[v] + 1;
+                    root[c] = r;
+                    nextChild[c] = childStart[c];
+                    first[c] = length;
+                    tour[length++] = c;
+                    stack[top++] = c;
+                    visited++;
+                } else {
+                    top--;
+                    if (top > 0) {
+                        tour[length++] = stack[top - 1];
+                    }
+                }
+            }
+        }
+        if (visited < V) {
+            return null;
+        }
+        
+        int levels = 1;
+        while ((1 << levels) <= length) {
+            levels++;
+        }
+        int[][] sparse = new int[levels][];
+        sparse[0] = Arrays.copyOf(tour, length);
+        for (int k = 1; k < levels; k++) {
+            int half = 1 << (k - 1);
+            int[] previous = sparse[k - 1];
+            int[] level = new int[length - (1 << k) + 1];
+            for (int i = 0; i < level.length; i++) {
+                int a = previous[i];
+                int b = previous[i + half];
+                level[i] = depth[a] <= depth[b] ? a : b;
+            }
+            sparse[k] = level;
+        }
+        return new TreeLCA(parent, depth, root, first, sparse);
+    }
+    
+    // lowest common ancestor of v and w; -1 if they are in different trees
+    int lca(int v, int w) {
+        if (root[v] != root[w]) {
+            return -1;
+        }
+        int lo = Math.min(first[v], first[w]);
+        int hi = Math.max(first[v], first[w]);
+        int k = 31 - Integer.numberOfLeadingZeros(hi - lo + 1);
+        int a = sparse[k][lo];
+        int b = sparse[k][hi - (1 << k) + 1];
+        return depth[a] <= depth[b] ? a : b;
+    }
+    
+    // length and ancestor of the shortest ancestral path between v and w, packed by
+    // AncestorIndex.pack()
+    long search(int v, int w) {
+        int a = lca(v, w);
+        if (a == -1) {
+            return AncestorIndex.pack(-1, -1);
+        }
+        return AncestorIndex.pack(depth[v] + depth[w] - 2 * depth[a], a);
+    }
+    
+    // length and ancestor of the shortest ancestral path between any vertex in v and any
+    // vertex in w, trying every pair; among equally short paths, the smallest ancestor
+    long search(int[] v, int[] w) {
+        return search(v, 0, v.length, w, 0, w.length);
+    }
+    
+    // search(int[], int[]) between v[vFrom .. vTo - 1] and w[wFrom .. wTo - 1], without
+    // copying or allocating
+    long search(int[] v, int vFrom, int vTo, int[] w, int wFrom, int wTo) {
+        int distance = -1;
+        int ancestor = -1;
+        for (int i = vFrom; i < vTo; i++) {
+            for (int j = wFrom; j < wTo; j++) {
+                int a = lca(v[i], w[j]);
+                if (a == -1) {
+                    continue;
+                }
+                int d = depth[v[i]] + depth[w[j]] - 2 * depth[a];
+                if (ancestor == -1 || d < distance || (d == distance && a < ancestor)) {
+                    distance = d;
+                    ancestor = a;
+                }
+            }
+        }
+        return AncestorIndex.pack(distance, ancestor);
+    }
+    
+    // shortest ancestral path between any vertex in v and any vertex in w
+    AncestralPath ancestralPath(int[] v, int[] w) {
+        int[] best = bestPair(v, w);
+        int distance = best[2];
+        int ancestor = best[3];
+        if (ancestor == -1) {
+            return new AncestralPath(-1, -1, new int[0]);
+        }
+        
+        int[] path = new int[distance + 1];
+        int k = 0;
+        for (int x = best[0]; x != ancestor; x = parent[x]) {
+            path[k++] = x;
+        }
+        path[k] = ancestor;
+        k = distance;
+        for (int x = best[1]; x != ancestor; x = parent[x]) {
+            path[k--] = x;
+        }
+        return new AncestralPath(distance, ancestor, path);
+    }
+    
+    // { source in v, source in w, length, ancestor } of the shortest ancestral path
+    private int[] bestPair(int[] v, int[] w) {
+        int[] best = { -1, -1, -1, -1 };
+        for (int x : v) {
+            for (int y : w) {
+                int a = lca(x, y);
+                if (a == -1) {
+                    continue;
+                }
+                int d = depth[x] + depth[y] - 2 * depth[a];
+                if (best[3] == -1 || d < best[2] || (d == best[2] && a < best[3])) {
+                    best[0] = x;
+                    best[1] = y;
+                    best[2] = d;
+                    best[3] = a;
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -1,115 +1,536 @@
-import edu.princeton.cs.algs4.In;
-import edu.princeton.cs.algs4.Digraph;
-import edu.princeton.cs.algs4.ST;
-import edu.princeton.cs.algs4.SET;
-import edu.princeton.cs.algs4.Topological;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 
 public class WordNet {
-    private ST<String, SET<Integer>> nounsST;  // noun and ids contain the noun
-    private ST<Integer, String> synsetsST;
-    private Digraph hypernymDigraph;
+    private NounIndex nounIndex;                // noun and ids contain the noun
+    private SynsetStore synsets;                // synonym set of each synset id, off the heap
+    private volatile CompactDigraph hypernymDigraph;  // replaced, never modified, by the changes
     private int synsetsCount;
     private int outEdgeCount;                   // the number of vertices having an out edge
     private SAP sap;
+    private final AtomicReferenceArray<NearestState> nearestStates =
+        new AtomicReferenceArray<NearestState>(2 * Runtime.getRuntime().availableProcessors());
     
     // constructor takes the name of the two input files
     public WordNet(String synsetsFile, String hypernymsFile) {
+        this(synsetsFile, hypernymsFile, 0);
+    }
+    
+    // constructor takes the name of the two input files and the number of
+    // noun pair results to cache; 0 disables the cache
+    public WordNet(String synsetsFile, String hypernymsFile, int cacheCapacity) {
+        this(synsetsFile, hypernymsFile, SAP.Strategy.BFS, cacheCapacity);
+    }
+    
+    // constructor takes the name of the two input files, the strategy SAP uses to
+    // answer queries and the number of noun pair results to cache; 0 disables the cache
+    public WordNet(String synsetsFile, String hypernymsFile, SAP.Strategy strategy, int cacheCapacity) {
         if (synsetsFile == null || hypernymsFile == null) {
             throw new IllegalArgumentException("synsets and hypernyms cannot be null.");
         }
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy cannot be null.");
+        }
+        if (cacheCapacity < 0) {
+            throw new IllegalArgumentException("cacheCapacity cannot be negative.");
+        }
         
         readSynsets(synsetsFile);
-        readHypernyms(hypernymsFile);
+        readHypernyms(hypernymsFile, strategy, cacheCapacity);
+    }
+    
+    // loads a WordNet from a snapshot written by save()
+    public static WordNet load(String snapshotFile) {
+        return load(snapshotFile, SAP.Strategy.BFS, 0);
+    }
+    
+    // loads a WordNet from a snapshot written by save(), with the strategy SAP uses to
+    // answer queries and the number of noun pair results to cache; 0 disables the cache
+    public static WordNet load(String snapshotFile, SAP.Strategy strategy, int cacheCapacity) {
+        if (snapshotFile == null) {
+            throw new IllegalArgumentException("snapshotFile cannot be null.");
+        }
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy cannot be null.");
+        }
+        if (cacheCapacity < 0) {
+            throw new IllegalArgumentException("cacheCapacity cannot be negative.");
+        }
+        
+        return new WordNet(WordNetSnapshot.read(snapshotFile), strategy, cacheCapacity);
+    }
+    
+    // the snapshot was validated when it was saved, and read() checked that its digraph is
+    // still acyclic in its order, so it is not checked again
+    private WordNet(WordNetSnapshot snapshot, SAP.Strategy strategy, int cacheCapacity) {
+        hypernymDigraph = new CompactDigraph(snapshot.offsets, snapshot.targets);
+        synsetsCount = hypernymDigraph.V();
+        synsets = snapshot.synsets;
+        nounIndex = new NounIndex(snapshot.nouns, snapshot.idStart, snapshot.ids);
+        
+        sap = new SAP(hypernymDigraph, strategy, cacheCapacity, snapshot.order);
+    }
+    
+    // writes a snapshot of this WordNet that load() reads back without parsing
+    public synchronized void save(String snapshotFile) {
+        if (snapshotFile == null) {
+            throw new IllegalArgumentException("snapshotFile cannot be null.");
+        }
+        
+        NounIndex nouns = nounIndex.compacted();
+        new WordNetSnapshot(hypernymDigraph.offsets(), hypernymDigraph.targets(), sap.topologicalOrder(), synsets,
+                            nouns.sortedNouns(), nouns.idStart(), nouns.ids()).write(snapshotFile);
+    }
+    
+    // The changes below run one at a time and may run while other threads query, as those
+    // of SAP do. A change updates the noun index last, so a query that finds a new noun
+    // also finds its synsets, their synonym sets and their hypernyms. Any other query
+    // answers as if it ran entirely before or entirely after a concurrent change.
+    
+    // adds a synset whose synonym set is the given nouns separated by spaces, as a hyponym
+    // of each of the hypernyms, and returns its id. Nothing reaches a new synset, so no
+    // other distance changes.
+    public synchronized int addSynset(String synonymSet, int... hypernyms) {
+        if (synonymSet == null || hypernyms == null) {
+            throw new IllegalArgumentException("synonymSet and hypernyms cannot be null.");
+        }
+        if (hypernyms.length == 0) {
+            throw new IllegalArgumentException("synset must have a hypernym, or it would be a second root.");
+        }
+        String[] nouns = synonymSet.split(" ", -1);
+        for (String noun : nouns) {
+            validateNoun(noun);
+        }
+        for (int hypernym : hypernyms) {
+            validateSynset(hypernym);
+        }
+        
+        int synsetId = synsetsCount;
+        sap.addVertex(hypernyms);
+        synsets.put(synsetId, synonymSet);
+        for (String noun : nouns) {
+            nounIndex.add(noun, synsetId);
+        }
+        synsetsCount++;
+        outEdgeCount++;
+        refreshDigraph();
+        return synsetId;
+    }
+    
+    // adds the noun to the synonym set of the synset
+    public synchronized void addNoun(String noun, int synsetId) {
+        validateNoun(noun);
+        validateSynset(synsetId);
+        
+        String synonymSet = synsets.get(synsetId);
+        if (Arrays.asList(synonymSet.split(" ")).contains(noun)) {
+            return;
+        }
+        synsets.put(synsetId, synonymSet + " " + noun);
+        nounIndex.add(noun, synsetId);
+    }
+    
+    // adds the hypernym edge synsetId->hypernym, unless it would create a cycle; only the
+    // distances from synsetId and its hyponyms can change
+    public synchronized void addHypernym(int synsetId, int hypernym) {
+        validateSynset(synsetId);
+        validateSynset(hypernym);
+        
+        sap.addEdge(synsetId, hypernym);
+        refreshDigraph();
+    }
+    
+    // removes the hypernym edge synsetId->hypernym, unless it is the only one (synsetId
+    // would become a second root); only the distances from synsetId and its hyponyms can change
+    public synchronized void removeHypernym(int synsetId, int hypernym) {
+        validateSynset(synsetId);
+        validateSynset(hypernym);
+        if (hypernymDigraph.outdegree(synsetId) == 1) {
+            throw new IllegalArgumentException("synset " + synsetId + " would become a second root.");
+        }
+        
+        sap.removeEdge(synsetId, hypernym);
+        refreshDigraph();
+    }
+    
+    // starts recording the work and latency of the searches behind distance() and sap(),
+    // and returns the metrics they are recorded in
+    public SAPMetrics enableMetrics() {
+        return sap.enableMetrics();
     }
     
     // returns all WordNet nouns
     public Iterable<String> nouns() {
-        return nounsST.keys();
+        return nounIndex.nouns();
     }
     
     // is the word a WordNet noun?
     public boolean isNoun(String word) {
-        return nounsST.contains(word);
+        return nounIndex.contains(word);
     }
     
     // distance between nounA and nounB (defined below)
     public int distance(String nounA, String nounB) {
-        if (!isNoun(nounA) || !isNoun(nounB)) {
+        int a = nounIndex.find(nounA);
+        int b = nounIndex.find(nounB);
+        if (a == -1 || b == -1) {
             throw new IllegalArgumentException("nounA and nounB should be WordNet nouns.");
         }
         
-        SET<Integer> synsetIdASet = nounsST.get(nounA);
-        SET<Integer> synsetIdBSet = nounsST.get(nounB);
-        
-        return sap.length(synsetIdASet, synsetIdBSet);
+        return sap.length(nounIndex.idArray(a), nounIndex.idFrom(a), nounIndex.idTo(a),
+                          nounIndex.idArray(b), nounIndex.idFrom(b), nounIndex.idTo(b));
     }
     
     // a synset (second field of synsets.txt) that is the common ancestor of nounA and nounB
     // in a shortest ancestral path (defined below)
     public String sap(String nounA, String nounB) {
-        if (!isNoun(nounA) || !isNoun(nounB)) {
+        int a = nounIndex.find(nounA);
+        int b = nounIndex.find(nounB);
+        if (a == -1 || b == -1) {
             throw new IllegalArgumentException("nounA and nounB should be WordNet nouns.");
         }
         
-        SET<Integer> synsetIdASet = nounsST.get(nounA);
-        SET<Integer> synsetIdBSet = nounsST.get(nounB);
+        int synsetIdAncestor = sap.ancestor(nounIndex.idArray(a), nounIndex.idFrom(a), nounIndex.idTo(a),
+                                            nounIndex.idArray(b), nounIndex.idFrom(b), nounIndex.idTo(b));
+        return synsets.get(synsetIdAncestor);
+    }
+    
+    // shortest ancestral path between the synsets of nounA and nounB, with its length
+    // and common ancestor synset id, from a single search
+    public AncestralPath ancestralPath(String nounA, String nounB) {
+        int[] synsetIdsA = nounIndex.synsetIds(nounA);
+        int[] synsetIdsB = nounIndex.synsetIds(nounB);
+        if (synsetIdsA == null || synsetIdsB == null) {
+            throw new IllegalArgumentException("nounA and nounB should be WordNet nouns.");
+        }
         
-        int synsetIdAncestor = sap.ancestor(synsetIdASet, synsetIdBSet);
-        return synsetsST.get(synsetIdAncestor);
+        return sap.ancestralPath(synsetIdsA, synsetIdsB);
     }
     
-    private void readSynsets(String synsetsFile) {
-        In in = new In(synsetsFile);
-        nounsST = new ST<String, SET<Integer>>();
-        synsetsST = new ST<Integer, String>();
-        while (in.hasNextLine()) {
-            String[] fields = in.readLine().split(",");
-            int synsetId = Integer.parseInt(fields[0]);
-            String synonymSet = fields[1];
-            for (String synset : synonymSet.split(" ")) {
-                SET<Integer> synsetIdSet = nounsST.get(synset);
-                if (synsetIdSet == null) {
-                    synsetIdSet = new SET<Integer>();
-                    nounsST.put(synset, synsetIdSet);
-                }
-                synsetIdSet.add(synsetId);
+    // distances[i][j] = distance between nouns[i] and nouns[j]; the synsets of each
+    // noun are searched once for the whole matrix
+    public int[][] distances(String[] nouns) {
+        return distances(nouns, false);
+    }
+    
+    // distances[i] = distance between nouns[i] and noun; the nouns are searched together,
+    // up to 64 at a time, in one sweep of the hypernym digraph
+    public int[] distances(String noun, String[] nouns) {
+        if (noun == null || nouns == null) {
+            throw new IllegalArgumentException("noun and nouns cannot be null.");
+        }
+        
+        int[] target = nounIndex.synsetIds(noun);
+        if (target == null) {
+            throw new IllegalArgumentException(noun + " is not a WordNet noun.");
+        }
+        int[][] synsetIds = new int[nouns.length][];
+        for (int i = 0; i < nouns.length; i++) {
+            synsetIds[i] = nounIndex.synsetIds(nouns[i]);
+            if (synsetIds[i] == null) {
+                throw new IllegalArgumentException(nouns[i] + " is not a WordNet noun.");
             }
-            synsetsST.put(synsetId, synonymSet);
-            synsetsCount++;
+        }
+        
+        return sap.lengths(synsetIds, target);
+    }
+    
+    // the k nouns closest to noun, nearest first and alphabetically among nouns at the
+    // same distance; fewer if there are not k other nouns. Synsets are settled in order
+    // of distance from those of noun, so the search stops as soon as the distance of
+    // the k-th noun cannot improve, instead of measuring the distance to every noun
+    public Iterable<String> nearest(String noun, int k) {
+        if (noun == null) {
+            throw new IllegalArgumentException("noun cannot be null.");
+        }
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive.");
+        }
+        int[] source = nounIndex.synsetIds(noun);
+        if (source == null) {
+            throw new IllegalArgumentException(noun + " is not a WordNet noun.");
+        }
+        
+        NearestState state = acquireNearestState();
+        try {
+            return nearest(state, noun, source, k);
+        } finally {
+            releaseNearestState(state);
         }
     }
     
-    private void readHypernyms(String hypernymsFile) {
-        In in = new In(hypernymsFile);
-        hypernymDigraph = new Digraph(synsetsCount);
-        boolean[] outEdge = new boolean[synsetsCount];
-        while (in.hasNextLine()) {
-            String[] fields = in.readLine().split(",");
-            int synsetId = Integer.parseInt(fields[0]);
-            for (int i = 1; i < fields.length; i++) {
-                int hypernym = Integer.parseInt(fields[i]); // synset's hypernyms
-                hypernymDigraph.addEdge(synsetId, hypernym);
+    // nearest(noun, k) from the synsets of noun, with the scratch arrays of state
+    private List<String> nearest(NearestState state, String noun, int[] source, int k) {
+        int epoch = state.begin();
+        int[] marked = state.marked;
+        int[] distTo = state.distTo;
+        
+        // ancestors of the synsets of noun, in bfs order, so by nondecreasing distance
+        int[] ancestors = state.ancestors;
+        int ancestorCount = 0;
+        for (int s : source) {
+            if (marked[s] != epoch) {
+                marked[s] = epoch;
+                distTo[s] = 0;
+                ancestors[ancestorCount++] = s;
+            }
+        }
+        CompactDigraph G = state.hypernyms;
+        int[] heads = G.heads();
+        for (int i = 0; i < ancestorCount; i++) {
+            int v = ancestors[i];
+            for (int e = G.start(v); e < G.end(v); e++) {
+                if (marked[heads[e]] != epoch) {
+                    marked[heads[e]] = epoch;
+                    distTo[heads[e]] = distTo[v] + 1;
+                    ancestors[ancestorCount++] = heads[e];
+                }
+            }
+        }
+        
+        // the distance to a synset is the shortest way up to an ancestor and down from it
+        // to the synset. The ancestors and the fifo queue of synsets reached going down are
+        // each in nondecreasing order of distance, so taking the nearer of their heads
+        // settles synsets in order of distance, as a priority queue would.
+        G = state.hyponyms;
+        heads = G.heads();
+        int[] queue = state.queue;
+        int head = 0;
+        int tail = 0;
+        int nextAncestor = 0;
+        
+        // nouns are marked seen by their position in the nouns the index was built with;
+        // only nouns new since then, rare until the next snapshot, need a set
+        NounIndex.SynsetNouns synsetNouns = nounIndex.synsetNouns();
+        String[] sortedNouns = nounIndex.sortedNouns();
+        int[] seen = state.seen;
+        Set<String> seenAdded = null;
+        int self = nounIndex.indexOf(noun);
+        if (self != -1) {
+            seen[self] = epoch;
+        } else {
+            seenAdded = new HashSet<String>();
+            seenAdded.add(noun);
+        }
+        
+        int[] settled = state.settled;
+        List<String> found = new ArrayList<String>();
+        int level = 0;           // distance of the synsets being settled
+        int levelStart = 0;      // nouns found at distance level start here in found
+        int kthDistance = -1;    // distance of the k-th noun, once k nouns are found
+        while (nextAncestor < ancestorCount || head < tail) {
+            int v;
+            if (head == tail || (nextAncestor < ancestorCount
+                                 && distTo[ancestors[nextAncestor]] <= distTo[queue[head]])) {
+                v = ancestors[nextAncestor++];
+            } else {
+                v = queue[head++];
+            }
+            if (settled[v] == epoch) {
+                continue;   // an ancestor reached going down first, nearer than going up
+            }
+            settled[v] = epoch;
+            int d = distTo[v];
+            if (kthDistance != -1 && d > kthDistance) {
+                break;
+            }
+            if (d > level) {
+                Collections.sort(found.subList(levelStart, found.size()));
+                level = d;
+                levelStart = found.size();
             }
             
-            // vertex has outdegree?
-            if (!outEdge[synsetId] && fields.length > 1) {
-                outEdge[synsetId] = true;
-                outEdgeCount++;
+            if (v < synsetNouns.synsetCount() && !synsets.changed(v)) {
+                for (int i = synsetNouns.start[v]; i < synsetNouns.start[v + 1]; i++) {
+                    int n = synsetNouns.nouns[i];
+                    if (seen[n] != epoch) {
+                        seen[n] = epoch;
+                        found.add(sortedNouns[n]);
+                    }
+                }
+            } else {
+                // a synonym set put since the index was built
+                for (String synonym : synsets.get(v).split(" ")) {
+                    int n = nounIndex.indexOf(synonym);
+                    if (n != -1) {
+                        if (seen[n] != epoch) {
+                            seen[n] = epoch;
+                            found.add(synonym);
+                        }
+                    } else {
+                        if (seenAdded == null) {
+                            seenAdded = new HashSet<String>();
+                        }
+                        if (seenAdded.add(synonym)) {
+                            found.add(synonym);
+                        }
+                    }
+                }
+            }
+            if (kthDistance == -1 && found.size() >= k) {
+                kthDistance = d;
+            }
+            
+            // an ancestor closer than d + 1 is reached going up, not down; one farther is
+            // settled from the queue, and skipped when its turn among the ancestors comes
+            for (int e = G.start(v); e < G.end(v); e++) {
+                int w = heads[e];
+                if (marked[w] != epoch || (settled[w] != epoch && d + 1 < distTo[w])) {
+                    marked[w] = epoch;
+                    distTo[w] = d + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        Collections.sort(found.subList(levelStart, found.size()));
+        
+        return new ArrayList<String>(found.subList(0, Math.min(k, found.size())));
+    }
+    
+    // distances(nouns), optionally computing the rows of the matrix in parallel
+    int[][] distances(String[] nouns, boolean parallel) {
+        if (nouns == null) {
+            throw new IllegalArgumentException("nouns cannot be null.");
+        }
+        
+        int[][] synsetIds = new int[nouns.length][];
+        for (int i = 0; i < nouns.length; i++) {
+            synsetIds[i] = nounIndex.synsetIds(nouns[i]);
+            if (synsetIds[i] == null) {
+                throw new IllegalArgumentException(nouns[i] + " is not a WordNet noun.");
+            }
+        }
+        
+        return sap.lengths(synsetIds, parallel);
+    }
+    
+    private void readSynsets(String synsetsFile) {
+        NounIndex.Builder nounsBuilder = new NounIndex.Builder();
+        SynsetStore.Builder synsetsBuilder = new SynsetStore.Builder();
+        WordNetParser.parseSynsets(synsetsFile, synsetsBuilder, nounsBuilder);
+        synsets = synsetsBuilder.build();
+        nounIndex = nounsBuilder.build();
+        synsetsCount = synsets.size();
+    }
+    
+    private void readHypernyms(String hypernymsFile, SAP.Strategy strategy, int cacheCapacity) {
+        hypernymDigraph = WordNetParser.parseHypernyms(hypernymsFile, synsetsCount);
+        for (int synsetId = 0; synsetId < synsetsCount; synsetId++) {
+            if (hypernymDigraph.outdegree(synsetId) > 0) {
+                outEdgeCount++;     // vertex has outdegree
+            }
+        }
+        sap = new SAP(hypernymDigraph, strategy, cacheCapacity, isRootedDAG());
+    }
+    
+    // picks up the digraph as changed by sap
+    private void refreshDigraph() {
+        hypernymDigraph = sap.digraph();
+    }
+    
+    // the edges of G reversed, from each synset to its hyponyms; kept up to date by sap
+    // while G is hypernymDigraph
+    private synchronized CompactDigraph hyponymDigraph(CompactDigraph G) {
+        return G == hypernymDigraph ? sap.reverseDigraph() : G.reverse();
+    }
+    
+    // borrows an idle nearest() state, pointed at the current digraph, or creates one if
+    // all are in use; a state sized for another number of synsets is dropped
+    private NearestState acquireNearestState() {
+        CompactDigraph hypernyms = hypernymDigraph;
+        int n = nearestStates.length();
+        int start = (int) (Thread.currentThread().getId() % n);
+        for (int i = 0; i < n; i++) {
+            int slot = (start + i) % n;
+            NearestState state = nearestStates.get(slot);
+            if (state != null && nearestStates.compareAndSet(slot, state, null) && state.marked.length == hypernyms.V()) {
+                if (state.hypernyms != hypernyms) {
+                    state.hypernyms = hypernyms;
+                    state.hyponyms = hyponymDigraph(hypernyms);
+                }
+                return state;
             }
         }
-        isRootedDAG();
-        sap = new SAP(hypernymDigraph);
+        return new NearestState(hypernyms, hyponymDigraph(hypernyms), nounIndex.sortedNouns().length);
     }
     
-    private void isRootedDAG() {
+    private void releaseNearestState(NearestState state) {
+        int n = nearestStates.length();
+        int start = (int) (Thread.currentThread().getId() % n);
+        for (int i = 0; i < n; i++) {
+            int slot = (start + i) % n;
+            if (nearestStates.get(slot) == null && nearestStates.compareAndSet(slot, null, state)) {
+                return;
+            }
+        }
+    }
+    
+    private void validateSynset(int synsetId) {
+        if (synsetId < 0 || synsetId >= synsetsCount) {
+            throw new IllegalArgumentException("synset " + synsetId + " is not between 0 and " + (synsetsCount - 1) + ".");
+        }
+    }
+    
+    // a noun is one field of a synonym set
+    private static void validateNoun(String noun) {
+        if (noun == null || noun.isEmpty() || noun.indexOf(' ') != -1 || noun.indexOf(',') != -1) {
+            throw new IllegalArgumentException("\"" + noun + "\" is not a valid noun.");
+        }
+    }
+    
+    // returns the topological order that proves the digraph is acyclic
+    private int[] isRootedDAG() {
         if (synsetsCount - outEdgeCount != 1) {
             throw new IllegalArgumentException("digraph must have only one root.");
         }
-                
-        Topological topological = new Topological(hypernymDigraph);
         
-        if (!topological.hasOrder()) {
+        int[] topologicalOrder = hypernymDigraph.topologicalOrder();
+        if (topologicalOrder == null) {
             throw new IllegalArgumentException("hypernyms is not a rooted DAG.");
         }
+        return topologicalOrder;
+    }
+    
+    // scratch arrays of a nearest() search, stamped with an epoch so that a search
+    // costs what it visits instead of a pass over every synset; used by one thread at a
+    // time and reused without allocation
+    private static class NearestState {
+        private CompactDigraph hypernyms;  // the digraph searched
+        private CompactDigraph hyponyms;   // hypernyms reversed
+        private final int[] marked;     // marked[v] == epoch iff distTo[v] is set by the current search
+        private final int[] distTo;     // distTo[v] = length of the shortest path found to v
+        private final int[] settled;    // settled[v] == epoch iff the nouns of v have been collected
+        private final int[] seen;       // seen[n] == epoch iff the n-th noun of the index has been found
+        private final int[] ancestors;  // ancestors of the source synsets, in bfs order
+        private final int[] queue;      // synsets reached going down, in order of distance
+        private int epoch;              // marks left by earlier searches are stale
+        
+        NearestState(CompactDigraph hypernyms, CompactDigraph hyponyms, int nounCount) {
+            this.hypernyms = hypernyms;
+            this.hyponyms = hyponyms;
+            marked = new int[hypernyms.V()];
+            distTo = new int[hypernyms.V()];
+            settled = new int[hypernyms.V()];
+            seen = new int[nounCount];
+            ancestors = new int[hypernyms.V()];
+            queue = new int[hypernyms.V()];
+        }
+        
+        // invalidates the marks of the previous search in O(1) and returns the new epoch
+        private int begin() {
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marked, 0);
+                Arrays.fill(settled, 0);
+                Arrays.fill(seen, 0);
+                epoch = 0;
+            }
+            return ++epoch;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,249 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+// reads the synsets and hypernyms files without building a String per line: each
+// file is memory-mapped and cut at line boundaries into chunks of about CHUNK bytes,
+// the chunks are tokenized byte by byte in parallel fork-join tasks, and their
+// results are merged in file order, so the merged structures are the same as if
+// the file had been read line by line.
+class WordNetParser {
+    static final int CHUNK = 1 << 20;
+    
+    private WordNetParser() { }
+    
+    // adds the synonym set of every line of synsetsFile ("id,noun noun ...,gloss") to
+    // synsets, and each of its nouns to nouns
+    static void parseSynsets(String synsetsFile, SynsetStore.Builder synsets, NounIndex.Builder nouns) {
+        byte[][] texts = read(synsetsFile);
+        SynsetsChunk[] chunks = new SynsetsChunk[texts.length];
+        for (int c = 0; c < texts.length; c++) {
+            chunks[c] = new SynsetsChunk(synsetsFile, texts[c]);
+        }
+        run(chunks);
+        
+        for (SynsetsChunk chunk : chunks) {
+            int noun = 0;
+            for (int line = 0; line < chunk.lineCount; line++) {
+                int synsetId = chunk.synsetIds[line];
+                synsets.add(synsetId, chunk.text, chunk.synsetStart[line], chunk.synsetEnd[line] - chunk.synsetStart[line]);
+                for (; noun < chunk.nounEnd[line]; noun++) {
+                    nouns.add(chunk.nouns[noun], synsetId);
+                }
+            }
+        }
+    }
+    
+    // the digraph on V vertices with an edge from the first id of every line of
+    // hypernymsFile ("id,hypernym,hypernym ...") to each following id
+    static CompactDigraph parseHypernyms(String hypernymsFile, int V) {
+        byte[][] texts = read(hypernymsFile);
+        HypernymsChunk[] chunks = new HypernymsChunk[texts.length];
+        for (int c = 0; c < texts.length; c++) {
+            chunks[c] = new HypernymsChunk(hypernymsFile, texts[c]);
+        }
+        run(chunks);
+        
+        int edgeCount = 0;
+        for (HypernymsChunk chunk : chunks) {
+            edgeCount += chunk.edgeCount;
+        }
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        int e = 0;
+        for (HypernymsChunk chunk : chunks) {
+            System.arraycopy(chunk.from, 0, from, e, chunk.edgeCount);
+            System.arraycopy(chunk.to, 0, to, e, chunk.edgeCount);
+            e += chunk.edgeCount;
+        }
+        return new CompactDigraph(V, from, to, edgeCount);
+    }
+    
+    // contents of the file cut into chunks that each end at the end of a line
+    private static byte[][] read(String file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(file + " is too large.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int size = buffer.limit();
+            
+            int[] bounds = new int[size / CHUNK + 2];
+            int count = 0;
+            for (int start = 0; start < size; ) {
+                int end = Math.min(size, start + CHUNK);
+                while (end < size && buffer.get(end - 1) != '\n') {
+                    end++;
+                }
+                bounds[count++] = start;
+                start = end;
+            }
+            bounds[count] = size;
+            
+            byte[][] texts = new byte[count][];
+            for (int c = 0; c < count; c++) {
+                texts[c] = new byte[bounds[c + 1] - bounds[c]];
+                buffer.get(bounds[c], texts[c]);
+            }
+            return texts;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("could not open " + file, e);
+        }
+    }
+    
+    // parses the chunks in the common pool; a single chunk is parsed by the caller
+    private static void run(RecursiveAction[] chunks) {
+        if (chunks.length == 1) {
+            chunks[0].invoke();
+        } else {
+            RecursiveAction.invokeAll(chunks);
+        }
+    }
+    
+    // lines of a chunk: text[lineStart .. lineEnd - 1] without the '\n' or "\r\n"
+    @SuppressWarnings("serial")
+    private abstract static class Chunk extends RecursiveAction {
+        final String file;
+        final byte[] text;
+        int pos;          // next byte to read
+        int lineEnd;      // end of the current line
+        
+        Chunk(String file, byte[] text) {
+            this.file = file;
+            this.text = text;
+        }
+        
+        @Override
+        protected void compute() {
+            while (pos < text.length) {
+                int lineStart = pos;
+                int next = lineStart;
+                while (next < text.length && text[next] != '\n') {
+                    next++;
+                }
+                lineEnd = next > lineStart && text[next - 1] == '\r' ? next - 1 : next;
+                if (lineEnd > lineStart) {
+                    parseLine(lineStart);
+                }
+                pos = next + 1;
+            }
+        }
+        
+        abstract void parseLine(int lineStart);
+        
+        // the nonnegative integer at pos, followed by ',' or the end of the line
+        int readInt() {
+            int start = pos;
+            long value = 0;
+            while (pos < lineEnd && text[pos] != ',') {
+                int digit = text[pos] - '0';
+                if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) {
+                    throw malformed(start);
+                }
+                value = 10 * value + digit;
+                pos++;
+            }
+            if (pos == start || value > Integer.MAX_VALUE) {
+                throw malformed(start);
+            }
+            return (int) value;
+        }
+        
+        IllegalArgumentException malformed(int at) {
+            int start = at;
+            while (start > 0 && text[start - 1] != '\n') {
+                start--;
+            }
+            String line = new String(text, start, lineEnd - start, StandardCharsets.UTF_8);
+            return new IllegalArgumentException("malformed line in " + file + ": " + line);
+        }
+    }
+    
+    @SuppressWarnings("serial")
+    private static class SynsetsChunk extends Chunk {
+        int lineCount;
+        int[] synsetIds = new int[64];
+        int[] synsetStart = new int[64];  // synonym set of line i is text[synsetStart[i] .. synsetEnd[i] - 1]
+        int[] synsetEnd = new int[64];
+        int[] nounEnd = new int[64];      // nouns of line i are nouns[nounEnd[i - 1] .. nounEnd[i] - 1]
+        String[] nouns = new String[64];
+        int nounCount;
+        
+        SynsetsChunk(String file, byte[] text) {
+            super(file, text);
+        }
+        
+        @Override
+        void parseLine(int lineStart) {
+            int synsetId = readInt();
+            if (pos == lineEnd) {
+                throw malformed(lineStart);
+            }
+            pos++;
+            int start = pos;
+            while (pos < lineEnd && text[pos] != ',') {
+                pos++;
+            }
+            int end = pos;
+            
+            int nounStart = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || text[i] == ' ') {
+                    if (nounCount == nouns.length) {
+                        nouns = Arrays.copyOf(nouns, 2 * nounCount);
+                    }
+                    nouns[nounCount++] = new String(text, nounStart, i - nounStart, StandardCharsets.UTF_8);
+                    nounStart = i + 1;
+                }
+            }
+            
+            if (lineCount == synsetIds.length) {
+                synsetIds = Arrays.copyOf(synsetIds, 2 * lineCount);
+                synsetStart = Arrays.copyOf(synsetStart, 2 * lineCount);
+                synsetEnd = Arrays.copyOf(synsetEnd, 2 * lineCount);
+                nounEnd = Arrays.copyOf(nounEnd, 2 * lineCount);
+            }
+            synsetIds[lineCount] = synsetId;
+            synsetStart[lineCount] = start;
+            synsetEnd[lineCount] = end;
+            nounEnd[lineCount] = nounCount;
+            lineCount++;
+        }
+    }
+    
+    @SuppressWarnings("serial")
+    private static class HypernymsChunk extends Chunk {
+        int[] from = new int[64];
+        int[] to = new int[64];
+        int edgeCount;
+        
+        HypernymsChunk(String file, byte[] text) {
+            super(file, text);
+        }
+        
+        // trailing commas end the line, as they did for String.split(",")
+        @Override
+        void parseLine(int lineStart) {
+            while (lineEnd > lineStart && text[lineEnd - 1] == ',') {
+                lineEnd--;
+            }
+            int synsetId = readInt();
+            while (pos < lineEnd) {
+                pos++;
+                int hypernym = readInt();
+                if (edgeCount == from.length) {
+                    from = Arrays.copyOf(from, 2 * edgeCount);
+                    to = Arrays.copyOf(to, 2 * edgeCount);
+                }
+                from[edgeCount] = synsetId;
+                to[edgeCount] = hypernym;
+                edgeCount++;
+            }
+        }
+    }
+}
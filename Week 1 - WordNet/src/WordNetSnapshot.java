@@ -0,0 +1,197 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// binary image of a validated WordNet: the hypernym digraph in compressed sparse
+// row form with its topological order, the synonym set of every synset and the
+// noun index. All sections are int arrays or length-prefixed blocks of UTF-8
+// bytes, so reading one back is a sequence of bulk copies out of a memory-mapped
+// file. The synonym sets are not copied at all: they stay in the mapping.
+//
+// layout (big-endian):
+//   magic, version, V, E, N
+//   offsets[V + 1], targets[E], order[V]            hypernym digraph
+//   synsetStart[V + 1], synset bytes                synonym sets
+//   nounStart[N + 1], noun bytes                    nouns, sorted
+//   idStart[N + 1], ids[]                           synset ids of each noun, sorted
+class WordNetSnapshot {
+    private static final int MAGIC = 0x574E5331;   // "WNS1"
+    private static final int VERSION = 1;
+    
+    final int[] offsets;       // hypernym digraph, see CompactDigraph
+    final int[] targets;
+    final int[] order;         // topological order of the hypernym digraph
+    final SynsetStore synsets; // synonym set of each synset id
+    final String[] nouns;      // nouns in sorted order
+    final int[] idStart;       // ids of nouns[i] are ids[idStart[i]] .. ids[idStart[i + 1] - 1]
+    final int[] ids;
+    
+    WordNetSnapshot(int[] offsets, int[] targets, int[] order, SynsetStore synsets,
+                    String[] nouns, int[] idStart, int[] ids) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.order = order;
+        this.synsets = synsets;
+        this.nouns = nouns;
+        this.idStart = idStart;
+        this.ids = ids;
+    }
+    
+    // writes the snapshot to file
+    void write(String file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(synsets.size());
+            out.writeInt(targets.length);
+            out.writeInt(nouns.length);
+            writeInts(out, offsets);
+            writeInts(out, targets);
+            writeInts(out, order);
+            synsets.write(out);
+            writeStrings(out, nouns);
+            writeInts(out, idStart);
+            writeInts(out, ids);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("could not write " + file, e);
+        }
+    }
+    
+    // reads a snapshot written by write(). Its digraph, order and synset ids are checked,
+    // in linear time, so that a corrupt file fails here instead of in a later query
+    static WordNetSnapshot read(String file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 20 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IllegalArgumentException(file + " is not a WordNet snapshot.");
+            }
+            
+            int V = buffer.getInt();
+            int E = buffer.getInt();
+            int N = buffer.getInt();
+            int[] offsets = readInts(buffer, V + 1);
+            int[] targets = readInts(buffer, E);
+            int[] order = readInts(buffer, V);
+            SynsetStore synsets = readSynsets(buffer, V);
+            String[] nouns = readStrings(buffer, N);
+            int[] idStart = readInts(buffer, N + 1);
+            int[] ids = readInts(buffer, idStart[N]);
+            validateDigraph(offsets, targets, order);
+            for (int id : ids) {
+                validateSynset(id, V);
+            }
+            return new WordNetSnapshot(offsets, targets, order, synsets, nouns, idStart, ids);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("could not open " + file, e);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException(file + " is truncated.", e);
+        } catch (NegativeArraySizeException e) {
+            throw new IllegalArgumentException(file + " is not a WordNet snapshot.", e);
+        }
+    }
+    
+    // offsets delimit the edges of each vertex, targets are vertices, and order is a
+    // permutation of the vertices in which every edge points forward
+    private static void validateDigraph(int[] offsets, int[] targets, int[] order) {
+        int V = order.length;
+        if (offsets[0] != 0 || offsets[V] != targets.length) {
+            throw new IllegalArgumentException("edge offsets do not match edges.");
+        }
+        for (int v = 0; v < V; v++) {
+            if (offsets[v] > offsets[v + 1]) {
+                throw new IllegalArgumentException("edge offsets must be nondecreasing.");
+            }
+        }
+        for (int w : targets) {
+            validateSynset(w, V);
+        }
+        
+        int[] position = new int[V];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < V; i++) {
+            validateSynset(order[i], V);
+            if (position[order[i]] != -1) {
+                throw new IllegalArgumentException("synset " + order[i] + " appears twice in the topological order.");
+            }
+            position[order[i]] = i;
+        }
+        for (int v = 0; v < V; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                if (position[v] >= position[targets[e]]) {
+                    throw new IllegalArgumentException("edge " + v + "->" + targets[e] + " goes against the topological order.");
+                }
+            }
+        }
+    }
+    
+    private static void validateSynset(int id, int V) {
+        if (id < 0 || id >= V) {
+            throw new IllegalArgumentException("synset " + id + " is not between 0 and " + (V - 1) + ".");
+        }
+    }
+    
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+    
+    // start offsets of each string in the byte block, then the block itself
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        byte[][] bytes = new byte[strings.length][];
+        int offset = 0;
+        out.writeInt(offset);
+        for (int i = 0; i < strings.length; i++) {
+            bytes[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+            offset += bytes[i].length;
+            out.writeInt(offset);
+        }
+        for (byte[] b : bytes) {
+            out.write(b);
+        }
+    }
+    
+    private static int[] readInts(ByteBuffer buffer, int n) {
+        int[] values = new int[n];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * n);
+        return values;
+    }
+    
+    // the synonym sets as a view of the mapped file
+    private static SynsetStore readSynsets(ByteBuffer buffer, int n) {
+        int[] start = readInts(buffer, n + 1);
+        ByteBuffer text = buffer.slice(buffer.position(), start[n]);
+        buffer.position(buffer.position() + start[n]);
+        return new SynsetStore(text, start);
+    }
+    
+    private static String[] readStrings(ByteBuffer buffer, int n) {
+        int[] start = readInts(buffer, n + 1);
+        for (int i = 0; i < n; i++) {
+            if (start[i] > start[i + 1]) {
+                throw new IllegalArgumentException("string offsets must be nondecreasing.");
+            }
+        }
+        if (start[0] != 0) {
+            throw new IllegalArgumentException("string offsets must start at 0.");
+        }
+        byte[] bytes = new byte[start[n]];
+        buffer.get(bytes);
+        
+        String[] strings = new String[n];
+        for (int i = 0; i < n; i++) {
+            strings[i] = new String(bytes, start[i], start[i + 1] - start[i], StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,42 @@
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Digraph;
+import junit.framework.TestCase;
+
+public class AncestorIndexTest extends TestCase {
+    
+    public void testConstructor_ThrowsExceptionWhenOrderIsMissing() {
+        CompactDigraph G = new CompactDigraph(new Digraph(new In("../test-input/digraph3.txt")));
+        try {
+            AncestorIndex index = new AncestorIndex(G, G.topologicalOrder());
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testDistance_LabelsHoldShortestPathToEveryAncestor() {
+        CompactDigraph G = new CompactDigraph(new Digraph(new In("../test-input/digraph1.txt")));
+        AncestorIndex index = new AncestorIndex(G, G.topologicalOrder());
+        
+        assertEquals(0, index.distance(11, 11));
+        assertEquals(1, index.distance(11, 10));
+        assertEquals(3, index.distance(11, 1));
+        assertEquals(4, index.distance(11, 0));
+        assertEquals(-1, index.distance(11, 2));
+        assertEquals(-1, index.distance(0, 11));
+    }
+    
+    public void testSearch_PicksShortestOfManyPaths() {
+        // 0 -> 1 -> 2 -> 3 and 0 -> 3; 4 -> 3
+        CompactDigraph G = new CompactDigraph(5, new int[] { 0, 1, 2, 0, 4 }, new int[] { 1, 2, 3, 3, 3 }, 5);
+        AncestorIndex index = new AncestorIndex(G, G.topologicalOrder());
+        
+        assertEquals(1, index.distance(0, 3));
+        long result = index.search(0, 4);
+        assertEquals(2, AncestorIndex.lengthOf(result));
+        assertEquals(3, AncestorIndex.ancestorOf(result));
+        
+        result = index.search(new int[] { 1, 2 }, new int[] { 4 });
+        assertEquals(2, AncestorIndex.lengthOf(result));
+    }
+}
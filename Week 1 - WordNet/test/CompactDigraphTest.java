@@ -0,0 +1,80 @@
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Digraph;
+import junit.framework.TestCase;
+import java.util.Arrays;
+
+public class CompactDigraphTest extends TestCase {
+    
+    public void testConstructor_KeepsAdjacencyOrderOfDigraph() {
+        In in = new In("../test-input/digraph25.txt");
+        Digraph G = new Digraph(in);
+        CompactDigraph compact = new CompactDigraph(G);
+        
+        assertEquals(G.V(), compact.V());
+        assertEquals(G.E(), compact.E());
+        int[] offsets = compact.offsets();
+        int[] targets = compact.targets();
+        for (int v = 0; v < G.V(); v++) {
+            int e = offsets[v];
+            for (int w : G.adj(v)) {
+                assertEquals(w, targets[e++]);
+            }
+            assertEquals(offsets[v + 1], e);
+        }
+    }
+    
+    public void testConstructor_FromEdgeListMatchesDigraph() {
+        int[] from = { 0, 1, 1, 2, 1 };
+        int[] to = { 1, 2, 3, 3, 0 };
+        Digraph G = new Digraph(4);
+        for (int i = 0; i < from.length; i++) {
+            G.addEdge(from[i], to[i]);
+        }
+        
+        CompactDigraph fromEdges = new CompactDigraph(4, from, to, from.length);
+        CompactDigraph fromDigraph = new CompactDigraph(G);
+        
+        assertEquals(3, fromEdges.outdegree(1));
+        assertTrue(Arrays.equals(fromDigraph.offsets(), fromEdges.offsets()));
+        assertTrue(Arrays.equals(fromDigraph.targets(), fromEdges.targets()));
+    }
+    
+    public void testConstructor_ThrowsExceptionWhenVertexOutOfRange() {
+        try {
+            CompactDigraph G = new CompactDigraph(2, new int[] { 0 }, new int[] { 2 }, 1);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testTopologicalOrder() {
+        CompactDigraph dag = new CompactDigraph(3, new int[] { 0, 1 }, new int[] { 1, 2 }, 2);
+        assertTrue(Arrays.equals(new int[] { 0, 1, 2 }, dag.topologicalOrder()));
+        
+        CompactDigraph cycle = new CompactDigraph(3, new int[] { 0, 1, 2 }, new int[] { 1, 2, 1 }, 3);
+        assertNull(cycle.topologicalOrder());
+    }
+    
+    public void testWithEdge_ListsNewEdgeFirst() {
+        CompactDigraph G = new CompactDigraph(3, new int[] { 0, 1 }, new int[] { 1, 2 }, 2);
+        CompactDigraph changed = G.withEdge(0, 2).withVertex(new int[] { 0, 1 });
+        
+        assertEquals(4, changed.V());
+        assertTrue(Arrays.equals(new int[] { 0, 2, 3, 3, 5 }, changed.offsets()));
+        assertTrue(Arrays.equals(new int[] { 2, 1, 2, 1, 0 }, changed.targets()));
+        assertEquals(2, G.E());
+        assertTrue(Arrays.equals(new int[] { 3, 1, 2 }, changed.withoutEdge(3, 0).reachable(3, null)));
+        assertTrue(Arrays.equals(new int[] { 2, 1, 0, 3 }, changed.reverse().reachable(2, null)));
+    }
+    
+    public void testWithoutEdge_ThrowsExceptionWhenEdgeIsMissing() {
+        CompactDigraph G = new CompactDigraph(3, new int[] { 0, 1 }, new int[] { 1, 2 }, 2);
+        try {
+            G.withoutEdge(0, 2);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,56 @@
+import junit.framework.TestCase;
+import java.util.Arrays;
+
+public class IntListsTest extends TestCase {
+    
+    public void testWith_LeavesEarlierCopiesUnchanged() {
+        IntLists lists = new IntLists(new int[] { 0, 2, 3, 3 }, new int[] { 4, 5, 6 });
+        IntLists changed = lists.with(1, new int[] { 7, 8 });
+        IntLists sibling = lists.with(0, new int[] { 9 });
+        
+        assertTrue(lists.packed());
+        assertFalse(changed.packed());
+        assertTrue(Arrays.equals(new int[] { 4, 5, 6 }, lists.pack()));
+        assertTrue(Arrays.equals(new int[] { 4, 5, 7, 8 }, changed.pack()));
+        assertTrue(Arrays.equals(new int[] { 9, 6 }, sibling.pack()));
+        assertTrue(Arrays.equals(new int[] { 0, 2, 4, 4 }, changed.offsets()));
+        assertEquals(4, changed.total());
+    }
+    
+    public void testWith_AddsListsAtTheEnd() {
+        IntLists lists = new IntLists(new int[] { 0, 1 }, new int[] { 3 });
+        for (int i = 1; i < 3000; i++) {
+            lists = lists.with(i, new int[] { i, -i });
+        }
+        
+        assertEquals(3000, lists.size());
+        assertEquals(3, lists.data()[lists.start(0)]);
+        for (int i = 1; i < 3000; i++) {
+            assertEquals(2, lists.length(i));
+            assertEquals(-i, lists.data()[lists.start(i) + 1]);
+        }
+    }
+    
+    public void testWith_PacksOnceReplacedListsOutnumberThoseInUse() {
+        IntLists lists = new IntLists(new int[] { 0, 3, 6 }, new int[] { 1, 1, 1, 2, 2, 2 });
+        boolean packed = false;
+        for (int i = 0; i < 5000; i++) {
+            lists = lists.with(i % 2, new int[] { i, i, i });
+            packed |= lists.packed();
+            assertEquals(6, lists.total());
+        }
+        
+        assertTrue(packed);
+        assertTrue(Arrays.equals(new int[] { 4998, 4998, 4998, 4999, 4999, 4999 }, lists.pack()));
+    }
+    
+    public void testWith_ThrowsExceptionWhenListIsOutOfRange() {
+        IntLists lists = new IntLists(new int[] { 0, 1 }, new int[] { 3 });
+        try {
+            lists.with(2, new int[0]);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
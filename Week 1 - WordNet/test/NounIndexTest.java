@@ -0,0 +1,123 @@
+import junit.framework.TestCase;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class NounIndexTest extends TestCase {
+    
+    public void testBuild_SortsNounsAndIds() {
+        NounIndex.Builder builder = new NounIndex.Builder();
+        builder.add("b", 3);
+        builder.add("a", 2);
+        builder.add("b", 1);
+        builder.add("c", 0);
+        NounIndex index = builder.build();
+        
+        List<String> nouns = new ArrayList<String>();
+        for (String noun : index.nouns()) {
+            nouns.add(noun);
+        }
+        assertEquals(Arrays.asList("a", "b", "c"), nouns);
+        assertEquals(3, index.size());
+        assertTrue(Arrays.equals(new int[] { 1, 3 }, index.synsetIds("b")));
+        assertTrue(Arrays.equals(new int[] { 2 }, index.synsetIds("a")));
+    }
+    
+    public void testBuild_DropsRepeatedIds() {
+        NounIndex.Builder builder = new NounIndex.Builder();
+        builder.add("a", 5);
+        builder.add("a", 5);
+        NounIndex index = builder.build();
+        assertTrue(Arrays.equals(new int[] { 5 }, index.synsetIds("a")));
+        assertEquals(1, index.ids().length);
+    }
+    
+    public void testContains_FindsEveryNounAfterGrowing() {
+        NounIndex.Builder builder = new NounIndex.Builder();
+        for (int i = 0; i < 5000; i++) {
+            builder.add("noun" + i, i);
+            builder.add("noun" + (i / 2), i);
+        }
+        NounIndex index = builder.build();
+        
+        assertEquals(5000, index.size());
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(index.contains("noun" + i));
+            assertEquals(i, index.synsetIds("noun" + i)[0]);
+        }
+        assertFalse(index.contains("noun5000"));
+        assertFalse(index.contains(""));
+        assertNull(index.synsetIds("verb"));
+    }
+    
+    public void testAdd_KeepsIdsSortedUntilCompacted() {
+        NounIndex.Builder builder = new NounIndex.Builder();
+        builder.add("b", 3);
+        builder.add("d", 1);
+        NounIndex index = builder.build();
+        index.add("b", 0);
+        index.add("c", 2);
+        index.add("a", 4);
+        
+        assertEquals(4, index.size());
+        assertTrue(index.contains("c"));
+        assertTrue(Arrays.equals(new int[] { 0, 3 }, index.synsetIds("b")));
+        List<String> nouns = new ArrayList<String>();
+        for (String noun : index.nouns()) {
+            nouns.add(noun);
+        }
+        assertEquals(Arrays.asList("a", "b", "c", "d"), nouns);
+        
+        NounIndex compacted = index.compacted();
+        assertTrue(Arrays.equals(new String[] { "a", "b", "c", "d" }, compacted.sortedNouns()));
+        assertTrue(Arrays.equals(new int[] { 4, 0, 3, 2, 1 }, compacted.ids()));
+    }
+    
+    public void testFind_HandleKeepsIdsAfterAdd() {
+        NounIndex.Builder builder = new NounIndex.Builder();
+        builder.add("a", 2);
+        builder.add("b", 3);
+        builder.add("b", 1);
+        NounIndex index = builder.build();
+        
+        int b = index.find("b");
+        assertTrue(Arrays.equals(new int[] { 1, 3 }, Arrays.copyOfRange(index.idArray(b), index.idFrom(b), index.idTo(b))));
+        assertSame(index.ids(), index.idArray(b));
+        assertEquals(-1, index.find("c"));
+        
+        index.add("b", 0);
+        int added = index.find("b");
+        assertTrue(Arrays.equals(new int[] { 0, 1, 3 }, Arrays.copyOfRange(index.idArray(added), index.idFrom(added), index.idTo(added))));
+        assertTrue(Arrays.equals(new int[] { 1, 3 }, Arrays.copyOfRange(index.idArray(b), index.idFrom(b), index.idTo(b))));
+        
+        index.add("b", 5);
+        assertTrue(Arrays.equals(new int[] { 0, 1, 3 }, Arrays.copyOfRange(index.idArray(added), index.idFrom(added), index.idTo(added))));
+        assertTrue(Arrays.equals(new int[] { 0, 1, 3, 5 }, index.synsetIds("b")));
+    }
+    
+    public void testIndexOf_ReturnsSortedPosition() {
+        NounIndex index = new NounIndex(new String[] { "x", "y", "z" }, new int[] { 0, 1, 2, 3 }, new int[] { 0, 1, 2 });
+        assertEquals(0, index.indexOf("x"));
+        assertEquals(2, index.indexOf("z"));
+        assertEquals(-1, index.indexOf("w"));
+    }
+    
+    public void testContains_ThrowsExceptionWhenNounIsNull() {
+        NounIndex index = new NounIndex.Builder().build();
+        try {
+            index.contains(null);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testConstructor_ThrowsExceptionWhenNounsAreNotSorted() {
+        try {
+            new NounIndex(new String[] { "b", "a" }, new int[] { 0, 1, 2 }, new int[] { 0, 1 });
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -1,4 +1,6 @@
 import junit.framework.TestCase;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 public class OutcastTest extends TestCase {
     
@@ -11,4 +13,48 @@ public class OutcastTest extends TestCase {
         assertEquals("bed", outcast.outcast(new String[] { "water", "soda", "bed", "orange_juice", "milk", "apple_juice", "tea", "coffee" }));
         assertEquals("potato", outcast.outcast(new String[] { "apple", "pear", "peach", "banana", "lime", "lemon", "blueberry", "strawberry", "mango", "watermelon", "potato" }));
     }
-}
\ No newline at end of file
+    
+    public void testOutcast_Tree() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        Outcast outcast = new Outcast(wordnet);
+        
+        assertEquals("o", outcast.outcast(new String[] { "h", "i", "d", "o" }));
+    }
+    
+    public void testOutcasts_MatchesOutcastInInputOrder() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        Outcast outcast = new Outcast(wordnet);
+        
+        String[] nouns = { "a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l", "m", "n", "o" };
+        Random random = new Random(13);
+        String[][] lists = new String[200][];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new String[2 + random.nextInt(nouns.length - 2)];
+            for (int j = 0; j < lists[i].length; j++) {
+                lists[i][j] = nouns[random.nextInt(nouns.length)];
+            }
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            String[] outcasts = outcast.outcasts(lists, pool);
+            assertEquals(lists.length, outcasts.length);
+            for (int i = 0; i < lists.length; i++) {
+                assertEquals(outcast.outcast(lists[i]), outcasts[i]);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    public void testOutcasts_ThrowsExceptionWhenListIsNull() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        Outcast outcast = new Outcast(wordnet);
+        try {
+            outcast.outcasts(new String[][] { { "a", "b" }, null });
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import junit.framework.TestCase;
+import java.util.Arrays;
+
+public class SAPCacheTest extends TestCase {
+    
+    public void testConstructor_ThrowsExceptionWhenCapacityIsNotPositive() {
+        try {
+            SAPCache cache = new SAPCache(0);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testNormalize_SortsAndRemovesDuplicates() {
+        int[] normalized = SAPCache.normalize(new int[] { 5, 1, 5, 3, 1 });
+        assertTrue(Arrays.equals(new int[] { 1, 3, 5 }, normalized));
+    }
+    
+    public void testGet_EvictsLeastRecentlyUsed() {
+        SAPCache cache = new SAPCache(2);
+        int[] a = { 1 };
+        int[] b = { 2 };
+        int[] c = { 3 };
+        AncestralPath path = new AncestralPath(-1, -1, new int[0]);
+        
+        cache.putPath(a, b, path);
+        cache.putPath(a, c, path);
+        assertNotNull(cache.path(a, b));   // (a, b) becomes most recently used
+        cache.putPath(b, c, path);            // evicts (a, c)
+        
+        assertEquals(2, cache.size());
+        assertNull(cache.path(a, c));
+        assertNotNull(cache.path(b, a));
+        assertNotNull(cache.path(c, b));
+        assertEquals(3, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+    
+    public void testInvalidate_DropsPathsFromAffectedVertices() {
+        SAPCache cache = new SAPCache(4);
+        AncestralPath path = new AncestralPath(-1, -1, new int[0]);
+        long generation = cache.generation();
+        cache.putPath(new int[] { 1 }, new int[] { 2 }, path);
+        cache.putPath(new int[] { 3 }, new int[] { 4, 5 }, path);
+        
+        boolean[] affected = new boolean[6];
+        affected[5] = true;
+        cache.invalidate(affected);
+        assertEquals(1, cache.size());
+        assertNotNull(cache.path(new int[] { 2 }, new int[] { 1 }));
+        
+        // a path found before the invalidation is not cached
+        cache.putPath(new int[] { 3 }, new int[] { 4 }, path, generation);
+        assertEquals(1, cache.size());
+    }
+    
+    public void testResult_PathIsMissUntilCached() {
+        SAPCache cache = new SAPCache(4);
+        long result = AncestorIndex.pack(4, 1);
+        assertEquals(SAPCache.MISS, cache.result(3, 11));
+        cache.putResult(11, 3, result, cache.generation());
+        
+        // a scalar query shares its entry with the sets of its single vertices
+        assertEquals(result, cache.result(3, 11));
+        assertEquals(result, cache.result(new int[] { 11 }, new int[] { 3 }));
+        assertNull(cache.path(new int[] { 3 }, new int[] { 11 }));
+        
+        AncestralPath path = new AncestralPath(4, 1, new int[] { 3, 1, 5, 10, 11 });
+        cache.putPath(new int[] { 3 }, new int[] { 11 }, path);
+        assertEquals(Arrays.asList(11, 10, 5, 1, 3), cache.path(new int[] { 11 }, new int[] { 3 }).path());
+        
+        // the bare result does not replace the path
+        cache.putResult(3, 11, result, cache.generation());
+        assertNotNull(cache.path(new int[] { 3 }, new int[] { 11 }));
+        assertEquals(1, cache.size());
+        assertEquals(4, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+    
+    public void testSize_SegmentsShareTheCapacity() {
+        SAPCache cache = new SAPCache(1000);
+        for (int v = 0; v < 5000; v++) {
+            cache.putResult(v, v + 1, AncestorIndex.pack(1, v + 1), cache.generation());
+        }
+        assertTrue(cache.size() <= 1000);
+        assertTrue(cache.size() > 900);
+    }
+}
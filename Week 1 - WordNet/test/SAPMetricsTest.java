@@ -0,0 +1,97 @@
+import edu.princeton.cs.algs4.Digraph;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import junit.framework.TestCase;
+
+public class SAPMetricsTest extends TestCase {
+    
+    public void testMetrics_IsNullUntilEnabled() {
+        SAP sap = new SAP(digraph());
+        assertNull(sap.metrics());
+        
+        SAPMetrics metrics = sap.enableMetrics();
+        assertSame(metrics, sap.metrics());
+        assertSame(metrics, sap.enableMetrics());
+    }
+    
+    public void testRecord_CountsWorkOfLockstepSearch() {
+        SAP sap = new SAP(digraph());
+        SAPMetrics metrics = sap.enableMetrics();
+        
+        // 1 and 2 meet at 2; the three vertices reached at distance 1 cannot shorten it
+        assertEquals(1, sap.length(1, 2));
+        SAPMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.searches());
+        assertEquals(2, snapshot.verticesExpanded());
+        assertEquals(3, snapshot.edgesScanned());
+        assertEquals(3, snapshot.verticesPruned());
+        assertTrue(snapshot.latencyPercentile(100.0) > 0);
+    }
+    
+    public void testRecord_CountsWorkOfBalancedSearch() {
+        SAP sap = new SAP(digraph(), SAP.Strategy.BALANCED_BFS, 0);
+        SAPMetrics metrics = sap.enableMetrics();
+        
+        // the sources are expanded; the level of 1 reached at distance 1 is cut off
+        assertEquals(1, sap.length(1, 2));
+        SAPMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.searches());
+        assertEquals(2, snapshot.verticesExpanded());
+        assertEquals(3, snapshot.edgesScanned());
+        assertEquals(2, snapshot.verticesPruned());
+    }
+    
+    public void testBucket_KeepsValuesWithinAnEighth() {
+        for (long value = 0; value < 1L << 40; value = value * 3 / 2 + 1) {
+            long highest = SAPMetrics.highestValue(SAPMetrics.bucket(value));
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 8);
+        }
+        assertEquals(Long.MAX_VALUE, SAPMetrics.highestValue(SAPMetrics.bucket(Long.MAX_VALUE)));
+    }
+    
+    public void testLatencyPercentile_ReturnsBucketOfRank() {
+        SAPMetrics metrics = new SAPMetrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.record(i, 0, 0, 0);
+        }
+        
+        SAPMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(50.5, snapshot.meanLatencyNanos(), 1e-9);
+        assertEquals(1, snapshot.latencyPercentile(0.0));
+        assertEquals(51, snapshot.latencyPercentile(50.0));
+        assertEquals(103, snapshot.latencyPercentile(100.0));
+        try {
+            snapshot.latencyPercentile(100.5);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testRegister_ExposesCountsOverJmx() throws Exception {
+        SAPMetrics metrics = new SAPMetrics();
+        metrics.record(1000, 4, 5, 6);
+        
+        ObjectName name = metrics.register("SAPMetricsTest");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(1L, server.getAttribute(name, "Searches"));
+            assertEquals(4L, server.getAttribute(name, "VerticesExpanded"));
+            assertEquals(5L, server.getAttribute(name, "EdgesScanned"));
+            assertEquals(6L, server.getAttribute(name, "VerticesPruned"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+    
+    // 1 -> 0, 1 -> 2, 2 -> 0: a DAG that is not a forest, so that queries are searched
+    private static Digraph digraph() {
+        Digraph G = new Digraph(3);
+        G.addEdge(1, 0);
+        G.addEdge(1, 2);
+        G.addEdge(2, 0);
+        return G;
+    }
+}
@@ -1,8 +1,17 @@
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.BreadthFirstDirectedPaths;
+import edu.princeton.cs.algs4.Topological;
 import junit.framework.TestCase;
 import java.util.Iterator;
 import java.util.Arrays; 
+import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SAPTest extends TestCase {
     
@@ -138,4 +147,727 @@ public class SAPTest extends TestCase {
             // expected
         }
     }
-}
\ No newline at end of file
+    
+    public void testLengthAndAncestor_ArraySources() {
+        In in = new In("../test-input/digraph25.txt");
+        Digraph G = new Digraph(in);
+        SAP sap = new SAP(G);
+        
+        assertEquals(4, sap.length(new int[] { 13, 23, 24 }, new int[] { 6, 16, 17 }));
+        assertEquals(3, sap.ancestor(new int[] { 13, 23, 24 }, new int[] { 6, 16, 17 }));
+        
+        // duplicate sources are ignored
+        assertEquals(4, sap.length(new int[] { 13, 13, 23, 24 }, new int[] { 6, 16, 17, 6 }));
+    }
+    
+    public void testLength_ArraySources_ThrowsExceptionWhenVertexOutOfRange() {
+        In in = new In("../test-input/digraph25.txt");
+        Digraph G = new Digraph(in);
+        SAP sap = new SAP(G);
+        
+        try {
+            sap.length(new int[] { 13, 25 }, new int[] { 6 });
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testLength_RepeatedQueriesReuseSearchState() {
+        In in = new In("../test-input/digraph-wordnet.txt");
+        Digraph G = new Digraph(in);
+        SAP sap = new SAP(G);
+        
+        // results must not depend on marks left by earlier searches
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++) {
+            int v = random.nextInt(G.V());
+            int w = random.nextInt(G.V());
+            int length = sap.length(v, w);
+            sap.length(random.nextInt(G.V()), random.nextInt(G.V()));
+            assertEquals(length, sap.length(Arrays.asList(v), Arrays.asList(w)));
+            assertEquals(length, sap.length(new int[] { v }, new int[] { w }));
+        }
+    }
+    
+    public void testAncestralPath_SingleSource() {
+        In in = new In("../test-input/digraph1.txt");
+        Digraph G = new Digraph(in);
+        SAP sap = new SAP(G);
+        
+        AncestralPath path = sap.ancestralPath(3, 11);
+        assertEquals(4, path.length());
+        assertEquals(1, path.ancestor());
+        assertEquals(Arrays.asList(3, 1, 5, 10, 11), path.path());
+        
+        path = sap.ancestralPath(1, 6);
+        assertEquals(-1, path.length());
+        assertEquals(-1, path.ancestor());
+        assertFalse(path.path().iterator().hasNext());
+    }
+    
+    public void testAncestralPath_MultipleSources() {
+        In in = new In("../test-input/digraph25.txt");
+        Digraph G = new Digraph(in);
+        SAP sap = new SAP(G);
+        
+        AncestralPath path = sap.ancestralPath(Arrays.asList(13, 23, 24), Arrays.asList(6, 16, 17));
+        assertEquals(sap.length(Arrays.asList(13, 23, 24), Arrays.asList(6, 16, 17)), path.length());
+        assertEquals(3, path.ancestor());
+        
+        int edges = -1;
+        for (int v : path.path()) {
+            edges++;
+        }
+        assertEquals(path.length(), edges);
+    }
+    
+    public void testCache_CountsHitsAndMisses() {
+        In in = new In("../test-input/digraph25.txt");
+        Digraph G = new Digraph(in);
+        SAP sap = new SAP(G, 16);
+        
+        assertEquals(4, sap.length(Arrays.asList(13, 23, 24), Arrays.asList(6, 16, 17)));
+        assertEquals(0, sap.cacheHits());
+        assertEquals(1, sap.cacheMisses());
+        
+        // the same query with sources reordered and sides swapped is a hit
+        assertEquals(3, sap.ancestor(Arrays.asList(17, 6, 16), Arrays.asList(24, 13, 23)));
+        assertEquals(1, sap.cacheHits());
+        assertEquals(1, sap.cacheMisses());
+    }
+    
+    public void testCache_SymmetricLookupReversesPath() {
+        In in = new In("../test-input/digraph1.txt");
+        Digraph G = new Digraph(in);
+        SAP sap = new SAP(G, 16);
+        
+        assertEquals(Arrays.asList(3, 1, 5, 10, 11), sap.ancestralPath(3, 11).path());
+        assertEquals(Arrays.asList(11, 10, 5, 1, 3), sap.ancestralPath(11, 3).path());
+        assertEquals(1, sap.cacheHits());
+    }
+    
+    public void testCache_MatchesUncachedResults() {
+        In in = new In("../test-input/digraph-wordnet.txt");
+        Digraph G = new Digraph(in);
+        SAP sap = new SAP(G);
+        SAP cached = new SAP(G, 64);
+        
+        Random random = new Random(7);
+        int[] vertices = new int[100];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = random.nextInt(G.V());
+        }
+        for (int i = 0; i < 1000; i++) {
+            int v = vertices[random.nextInt(vertices.length)];
+            int w = vertices[random.nextInt(vertices.length)];
+            assertEquals(sap.length(v, w), cached.length(v, w));
+            assertEquals(sap.length(v, w), cached.length(w, v));
+        }
+        assertTrue(cached.cacheHits() > 0);
+    }
+    
+    public void testConstructor_ThrowsExceptionWhenCacheCapacityIsNegative() {
+        In in = new In("../test-input/digraph1.txt");
+        Digraph G = new Digraph(in);
+        try {
+            SAP sap = new SAP(G, -1);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testAncestorIndex_MatchesBfsOnAllPairs() {
+        String[] files = {
+            "digraph1.txt", "digraph2.txt", "digraph4.txt", "digraph5.txt", "digraph6.txt",
+            "digraph25.txt", "digraph-ambiguous-ancestor.txt"
+        };
+        for (String file : files) {
+            Digraph G = new Digraph(new In("../test-input/" + file));
+            assertIndexMatchesBfs(G);
+        }
+        
+        String[] hypernyms = {
+            "hypernyms11ManyPathsOneAncestor.txt", "hypernyms11AmbiguousAncestor.txt",
+            "hypernyms15Tree.txt", "hypernyms8ManyAncestors.txt", "hypernyms6TwoAncestors.txt"
+        };
+        for (String file : hypernyms) {
+            assertIndexMatchesBfs(readHypernyms("../test-input/" + file));
+        }
+    }
+    
+    public void testForestLca_MatchesBfsOnAllPairs() {
+        String[] files = { "digraph25.txt", "digraph1.txt", "digraph2.txt" };
+        for (String file : files) {
+            Digraph G = new Digraph(new In("../test-input/" + file));
+            SAP bfs = new SAP(G, SAP.Strategy.BALANCED_BFS, 0);
+            SAP lca = new SAP(G, SAP.Strategy.FOREST_LCA, 0);
+            for (int v = 0; v < G.V(); v++) {
+                for (int w = 0; w < G.V(); w++) {
+                    assertEquals(bfs.length(v, w), lca.length(v, w));
+                    assertEquals(bfs.length(v, w), distanceThrough(G, v, w, lca.ancestor(v, w)));
+                }
+            }
+        }
+    }
+    
+    public void testBfs_AnswersForestThroughLcaWhileItIsOne() {
+        Digraph G = new Digraph(new In("../test-input/digraph1.txt"));
+        SAP sap = new SAP(G);
+        SAPMetrics metrics = sap.enableMetrics();
+        
+        // only searches are recorded
+        assertEquals(4, sap.length(3, 11));
+        assertEquals(0, metrics.snapshot().searches());
+        
+        sap.addEdge(7, 4);
+        assertEquals(1, sap.length(7, 4));
+        assertEquals(1, metrics.snapshot().searches());
+        
+        sap.removeEdge(7, 4);
+        assertEquals(3, sap.length(7, 4));
+        assertEquals(1, metrics.snapshot().searches());
+    }
+    
+    public void testLength_SlicesMatchCopies() {
+        Digraph G = new Digraph(new In("../test-input/digraph25.txt"));
+        int[] shared = { 9, 13, 23, 24, 6, 16, 17, 3 };
+        SAP[] saps = { new SAP(G), new SAP(G, 16), new SAP(G, SAP.Strategy.ANCESTOR_INDEX, 0),
+                       new SAP(G, SAP.Strategy.FOREST_LCA, 0) };
+        for (SAP sap : saps) {
+            for (int from = 0; from < shared.length; from++) {
+                for (int to = from + 1; to <= shared.length; to++) {
+                    int[] v = Arrays.copyOfRange(shared, from, to);
+                    int[] w = Arrays.copyOfRange(shared, shared.length - to + from, shared.length);
+                    int wFrom = shared.length - to + from;
+                    assertEquals(sap.length(v, w), sap.length(shared, from, to, shared, wFrom, shared.length));
+                    assertEquals(sap.ancestor(v, w), sap.ancestor(shared, from, to, shared, wFrom, shared.length));
+                }
+            }
+        }
+    }
+    
+    public void testLength_ThrowsExceptionWhenSliceIsOutOfBounds() {
+        SAP sap = new SAP(new Digraph(new In("../test-input/digraph25.txt")));
+        int[] shared = { 1, 2, 3 };
+        try {
+            sap.length(shared, 2, 4, shared, 0, 1);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testAncestorIndex_MatchesBfsOnWordNet() {
+        Digraph G = new Digraph(new In("../test-input/digraph-wordnet.txt"));
+        SAP bfs = new SAP(G);
+        SAP indexed = new SAP(G, SAP.Strategy.ANCESTOR_INDEX, 0);
+        
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            int v = random.nextInt(G.V());
+            int w = random.nextInt(G.V());
+            assertEquals(bfs.length(v, w), indexed.length(v, w));
+            assertEquals(bfs.length(v, w), distanceThrough(G, v, w, indexed.ancestor(v, w)));
+        }
+        for (int i = 0; i < 500; i++) {
+            int[] v = { random.nextInt(G.V()), random.nextInt(G.V()), random.nextInt(G.V()) };
+            int[] w = { random.nextInt(G.V()), random.nextInt(G.V()) };
+            assertEquals(bfs.length(v, w), indexed.length(v, w));
+            assertEquals(bfs.length(v, w), indexed.ancestralPath(toList(v), toList(w)).length());
+        }
+    }
+    
+    public void testAncestorIndex_PathFollowsEdges() {
+        Digraph G = readHypernyms("../test-input/hypernyms11ManyPathsOneAncestor.txt");
+        SAP sap = new SAP(G, SAP.Strategy.ANCESTOR_INDEX, 0);
+        
+        for (int v = 0; v < G.V(); v++) {
+            for (int w = 0; w < G.V(); w++) {
+                AncestralPath path = sap.ancestralPath(v, w);
+                Iterator<Integer> it = path.path().iterator();
+                int edges = 0;
+                int previous = it.next();
+                boolean up = true;
+                while (it.hasNext()) {
+                    int next = it.next();
+                    if (previous == path.ancestor()) {
+                        up = false;
+                    }
+                    assertTrue(up ? hasEdge(G, previous, next) : hasEdge(G, next, previous));
+                    previous = next;
+                    edges++;
+                }
+                assertEquals(path.length(), edges);
+            }
+        }
+    }
+    
+    public void testAncestorIndex_ThrowsExceptionWhenDigraphHasCycle() {
+        Digraph G = new Digraph(new In("../test-input/digraph3.txt"));
+        try {
+            SAP sap = new SAP(G, SAP.Strategy.ANCESTOR_INDEX, 0);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testBalancedBfs_MatchesBfsOnAllPairs() {
+        String[] files = {
+            "digraph1.txt", "digraph2.txt", "digraph3.txt", "digraph4.txt", "digraph5.txt",
+            "digraph6.txt", "digraph9.txt", "digraph25.txt", "digraph-ambiguous-ancestor.txt"
+        };
+        for (String file : files) {
+            Digraph G = new Digraph(new In("../test-input/" + file));
+            SAP bfs = new SAP(G);
+            SAP balanced = new SAP(G, SAP.Strategy.BALANCED_BFS, 0);
+            for (int v = 0; v < G.V(); v++) {
+                for (int w = 0; w < G.V(); w++) {
+                    int length = bfs.length(v, w);
+                    assertEquals(length, balanced.length(v, w));
+                    assertEquals(length, distanceThrough(G, v, w, balanced.ancestor(v, w)));
+                    assertEquals(length, balanced.ancestralPath(v, w).length());
+                }
+            }
+        }
+    }
+    
+    public void testBalancedBfs_MatchesAncestorIndexOnWordNet() {
+        Digraph G = new Digraph(new In("../test-input/digraph-wordnet.txt"));
+        SAP indexed = new SAP(G, SAP.Strategy.ANCESTOR_INDEX, 0);
+        SAP balanced = new SAP(G, SAP.Strategy.BALANCED_BFS, 0);
+        
+        // both keep the smallest ancestor id among shortest paths
+        Random random = new Random(13);
+        for (int i = 0; i < 2000; i++) {
+            int v = random.nextInt(G.V());
+            int w = random.nextInt(G.V());
+            assertEquals(indexed.length(v, w), balanced.length(v, w));
+            assertEquals(indexed.ancestor(v, w), balanced.ancestor(v, w));
+        }
+        for (int i = 0; i < 500; i++) {
+            int[] v = new int[1 + random.nextInt(20)];
+            int[] w = new int[1 + random.nextInt(3)];
+            for (int k = 0; k < v.length; k++) {
+                v[k] = random.nextInt(G.V());
+            }
+            for (int k = 0; k < w.length; k++) {
+                w[k] = random.nextInt(G.V());
+            }
+            assertEquals(indexed.length(v, w), balanced.length(v, w));
+            assertEquals(indexed.ancestor(v, w), balanced.ancestor(v, w));
+            assertEquals(indexed.length(v, w), balanced.ancestralPath(v, w).length());
+        }
+    }
+    
+    public void testBalancedBfs_ParallelLevelsMatchSequential() {
+        Digraph G = readHypernyms("../test-input/hypernyms300K.txt");
+        SAP sequential = new SAP(G, SAP.Strategy.BALANCED_BFS, 0);
+        sequential.parallelFrontier(Integer.MAX_VALUE);
+        SAP parallel = new SAP(G, SAP.Strategy.BALANCED_BFS, 0);
+        parallel.parallelFrontier(1);
+        
+        // the same path, not just one as short: the levels are reached in the same order
+        Random random = new Random(20);
+        for (int i = 0; i < 100; i++) {
+            int[] v = new int[1 + random.nextInt(3)];
+            int[] w = new int[1 + random.nextInt(100)];
+            for (int k = 0; k < v.length; k++) {
+                v[k] = random.nextInt(G.V());
+            }
+            for (int k = 0; k < w.length; k++) {
+                w[k] = random.nextInt(G.V());
+            }
+            assertEquals(sequential.ancestralPath(v, w).toString(), parallel.ancestralPath(v, w).toString());
+            assertEquals(sequential.length(v[0], w[0]), parallel.length(v[0], w[0]));
+            assertEquals(sequential.ancestor(v[0], w[0]), parallel.ancestor(v[0], w[0]));
+        }
+    }
+    
+    public void testLockstepBfs_ParallelLevelsMatchSequential() {
+        Digraph G = readHypernyms("../test-input/hypernyms300K.txt");
+        SAP sequential = new SAP(G);
+        sequential.parallelFrontier(Integer.MAX_VALUE);
+        SAP parallel = new SAP(G);
+        parallel.parallelFrontier(1);
+        SAPMetrics metrics = parallel.enableMetrics();
+        
+        // as short a path, though of several the one found may differ
+        Random random = new Random(21);
+        for (int i = 0; i < 100; i++) {
+            int[] v = new int[1 + random.nextInt(3)];
+            int[] w = new int[1 + random.nextInt(100)];
+            for (int k = 0; k < v.length; k++) {
+                v[k] = random.nextInt(G.V());
+            }
+            for (int k = 0; k < w.length; k++) {
+                w[k] = random.nextInt(G.V());
+            }
+            AncestralPath path = parallel.ancestralPath(v, w);
+            assertEquals(sequential.length(v, w), path.length());
+            assertAncestralPath(G, path);
+            int length = sequential.length(v[0], w[0]);
+            assertEquals(length, parallel.length(v[0], w[0]));
+            assertEquals(length, distanceThrough(G, v[0], w[0], parallel.ancestor(v[0], w[0])));
+        }
+        assertEquals(300, metrics.snapshot().searches());
+    }
+    
+    public void testParallelFrontier_ThrowsExceptionWhenSizeIsNotPositive() {
+        SAP sap = new SAP(new Digraph(new In("../test-input/digraph1.txt")));
+        try {
+            sap.parallelFrontier(0);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testLengths_MatchesPairwiseLength() {
+        Digraph G = new Digraph(new In("../test-input/digraph-wordnet.txt"));
+        SAP bfs = new SAP(G);
+        SAP indexed = new SAP(G, SAP.Strategy.ANCESTOR_INDEX, 0);
+        
+        Random random = new Random(5);
+        int[][] sources = new int[29][];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = new int[1 + random.nextInt(3)];
+            for (int j = 0; j < sources[i].length; j++) {
+                sources[i][j] = random.nextInt(G.V());
+            }
+        }
+        
+        int[][] lengths = bfs.lengths(sources);
+        assertTrue(Arrays.deepEquals(lengths, indexed.lengths(sources)));
+        assertTrue(Arrays.deepEquals(lengths, bfs.lengths(sources, true)));
+        for (int i = 0; i < sources.length; i++) {
+            assertEquals(0, lengths[i][i]);
+            for (int j = 0; j < sources.length; j++) {
+                if (i != j) {
+                    assertEquals(bfs.length(sources[i], sources[j]), lengths[i][j]);
+                }
+            }
+        }
+    }
+    
+    public void testLengthsToTarget_MatchesLength() {
+        String[] files = { "digraph3.txt", "digraph9.txt", "digraph25.txt", "digraph-wordnet.txt" };
+        Random random = new Random(17);
+        for (String file : files) {
+            Digraph G = new Digraph(new In("../test-input/" + file));
+            SAP bfs = new SAP(G);
+            SAP indexed = file.equals("digraph-wordnet.txt") ? new SAP(G, SAP.Strategy.ANCESTOR_INDEX, 0) : bfs;
+            
+            // more than 64 sets, so the sources are swept in several chunks
+            for (int query = 0; query < 5; query++) {
+                int[][] sources = new int[150][];
+                for (int i = 0; i < sources.length; i++) {
+                    sources[i] = new int[random.nextInt(4)];
+                    for (int k = 0; k < sources[i].length; k++) {
+                        sources[i][k] = random.nextInt(G.V());
+                    }
+                }
+                int[] target = { random.nextInt(G.V()), random.nextInt(G.V()) };
+                
+                int[] lengths = bfs.lengths(sources, target);
+                assertTrue(Arrays.equals(lengths, indexed.lengths(sources, target)));
+                for (int i = 0; i < sources.length; i++) {
+                    assertEquals(bfs.length(sources[i], target), lengths[i]);
+                }
+            }
+        }
+    }
+    
+    public void testLengthsToTarget_ThrowsExceptionWhenTargetIsNull() {
+        SAP sap = new SAP(new Digraph(new In("../test-input/digraph1.txt")));
+        try {
+            sap.lengths(new int[][] { { 1 } }, null);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testLengths_ThrowsExceptionWhenVertexOutOfRange() {
+        In in = new In("../test-input/digraph1.txt");
+        Digraph G = new Digraph(in);
+        SAP sap = new SAP(G);
+        
+        try {
+            sap.lengths(new int[][] { { 1 }, { 13 } });
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testAddEdge_MatchesSapOfChangedDigraph() {
+        SAP.Strategy[] strategies = {
+            SAP.Strategy.BFS, SAP.Strategy.ANCESTOR_INDEX, SAP.Strategy.BALANCED_BFS, SAP.Strategy.FOREST_LCA
+        };
+        for (SAP.Strategy strategy : strategies) {
+            Digraph G = new Digraph(new In("../test-input/digraph25.txt"));
+            List<int[]> edges = new ArrayList<int[]>();
+            for (int v = 0; v < G.V(); v++) {
+                for (int w : G.adj(v)) {
+                    edges.add(new int[] { v, w });
+                }
+            }
+            SAP sap = new SAP(G, strategy, 64);
+            
+            Random random = new Random(7);
+            for (int step = 0; step < 60; step++) {
+                // fill the cache, so that a stale entry would be caught below
+                for (int i = 0; i < 20; i++) {
+                    sap.length(random.nextInt(G.V()), random.nextInt(G.V()));
+                }
+                
+                if (step % 3 == 2) {
+                    int[] edge = edges.remove(random.nextInt(edges.size()));
+                    sap.removeEdge(edge[0], edge[1]);
+                } else {
+                    int v = random.nextInt(G.V());
+                    int w = random.nextInt(G.V());
+                    edges.add(0, new int[] { v, w });
+                    Digraph changed = digraphOf(G.V(), edges);
+                    if (v == w || !new Topological(changed).hasOrder()) {
+                        edges.remove(0);
+                        try {
+                            sap.addEdge(v, w);
+                            fail("Exception should have been thrown");
+                        } catch (final IllegalArgumentException e) {
+                            // expected
+                        }
+                    } else {
+                        sap.addEdge(v, w);
+                    }
+                }
+                
+                Digraph changed = digraphOf(G.V(), edges);
+                assertTopologicalOrder(changed, sap.topologicalOrder());
+                SAP fresh = new SAP(changed);
+                for (int v = 0; v < G.V(); v++) {
+                    for (int w = 0; w < G.V(); w++) {
+                        int length = fresh.length(v, w);
+                        assertEquals(length, sap.length(v, w));
+                        assertEquals(length, distanceThrough(changed, v, w, sap.ancestor(v, w)));
+                    }
+                }
+            }
+        }
+    }
+    
+    public void testAddVertex_IsReachedByNoOtherVertex() {
+        Digraph G = new Digraph(new In("../test-input/digraph1.txt"));
+        SAP sap = new SAP(G, SAP.Strategy.ANCESTOR_INDEX, 16);
+        assertEquals(1, sap.ancestor(3, 11));
+        sap.addVertex(new int[] { 11, 8 });
+        
+        assertEquals(G.V() + 1, sap.digraph().V());
+        assertEquals(1, sap.length(G.V(), 11));
+        assertEquals(1, sap.length(G.V(), 8));
+        assertEquals(2, sap.length(G.V(), 3));
+        assertEquals(3, sap.ancestor(G.V(), 3));
+        assertEquals(1, sap.ancestor(3, 11));
+    }
+    
+    public void testAddVertex_ManyVerticesMatchSapOfChangedDigraph() {
+        SAP.Strategy[] strategies = { SAP.Strategy.BFS, SAP.Strategy.ANCESTOR_INDEX };
+        for (SAP.Strategy strategy : strategies) {
+            Digraph G = new Digraph(new In("../test-input/digraph25.txt"));
+            List<int[]> edges = new ArrayList<int[]>();
+            for (int v = 0; v < G.V(); v++) {
+                for (int w : G.adj(v)) {
+                    edges.add(new int[] { v, w });
+                }
+            }
+            SAP sap = new SAP(G, strategy, 64);
+            
+            // more vertices than the order first leaves room for
+            Random random = new Random(11);
+            int V = G.V();
+            for (int step = 0; step < 40; step++) {
+                int[] adj = new int[1 + random.nextInt(2)];
+                for (int i = 0; i < adj.length; i++) {
+                    adj[i] = random.nextInt(V);
+                    edges.add(new int[] { V, adj[i] });
+                }
+                sap.addVertex(adj);
+                V++;
+                if (step % 4 == 3) {
+                    int[] edge = edges.remove(random.nextInt(edges.size()));
+                    sap.removeEdge(edge[0], edge[1]);
+                }
+                sap.length(random.nextInt(V), random.nextInt(V));
+            }
+            
+            Digraph changed = digraphOf(V, edges);
+            assertTopologicalOrder(changed, sap.topologicalOrder());
+            SAP fresh = new SAP(changed);
+            for (int v = 0; v < V; v++) {
+                for (int w = 0; w < V; w++) {
+                    int length = fresh.length(v, w);
+                    assertEquals(length, sap.length(v, w));
+                    assertEquals(length, distanceThrough(changed, v, w, sap.ancestor(v, w)));
+                }
+            }
+        }
+    }
+    
+    public void testAddEdge_ThrowsExceptionWhenEdgeWouldCreateCycle() {
+        SAP sap = new SAP(new Digraph(new In("../test-input/digraph1.txt")), SAP.Strategy.ANCESTOR_INDEX, 0);
+        try {
+            sap.addEdge(0, 7);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testLengthAndAncestor_ConcurrentQueries() throws Exception {
+        In in = new In("../test-input/digraph-wordnet.txt");
+        Digraph G = new Digraph(in);
+        final SAP sap = new SAP(G);
+        final SAP cached = new SAP(G, 256);
+        
+        final int queries = 2000;
+        final int[] v = new int[queries];
+        final int[] w = new int[queries];
+        int[] expectedLength = new int[queries];
+        int[] expectedAncestor = new int[queries];
+        Random random = new Random(42);
+        for (int i = 0; i < queries; i++) {
+            v[i] = random.nextInt(G.V());
+            w[i] = random.nextInt(G.V());
+            expectedLength[i] = sap.length(v[i], w[i]);
+            expectedAncestor[i] = sap.ancestor(v[i], w[i]);
+        }
+        
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<int[][]>> futures = new ArrayList<Future<int[][]>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(new Callable<int[][]>() {
+                    public int[][] call() {
+                        int[][] result = new int[3][queries];
+                        for (int i = 0; i < queries; i++) {
+                            result[0][i] = sap.length(v[i], w[i]);
+                            result[1][i] = sap.ancestor(v[i], w[i]);
+                            result[2][i] = cached.length(v[i], w[i]);
+                        }
+                        return result;
+                    }
+                }));
+            }
+            for (Future<int[][]> future : futures) {
+                int[][] result = future.get();
+                assertTrue(Arrays.equals(expectedLength, result[0]));
+                assertTrue(Arrays.equals(expectedAncestor, result[1]));
+                assertTrue(Arrays.equals(expectedLength, result[2]));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    // digraph of a hypernyms file: synset id followed by the ids of its hypernyms
+    private static Digraph readHypernyms(String file) {
+        String[] lines = new In(file).readAllLines();
+        Digraph G = new Digraph(lines.length);
+        for (String line : lines) {
+            String[] fields = line.split(",");
+            for (int i = 1; i < fields.length; i++) {
+                G.addEdge(Integer.parseInt(fields[0]), Integer.parseInt(fields[i]));
+            }
+        }
+        return G;
+    }
+    
+    private static Digraph digraphOf(int V, List<int[]> edges) {
+        Digraph G = new Digraph(V);
+        for (int i = edges.size() - 1; i >= 0; i--) {
+            G.addEdge(edges.get(i)[0], edges.get(i)[1]);
+        }
+        return G;
+    }
+    
+    // checks that the path climbs edges of G up to its ancestor and descends them after it
+    private static void assertAncestralPath(Digraph G, AncestralPath path) {
+        List<Integer> vertices = new ArrayList<Integer>();
+        for (int x : path.path()) {
+            vertices.add(x);
+        }
+        assertEquals(path.length() + 1, vertices.size());
+        int top = vertices.indexOf(path.ancestor());
+        for (int i = 0; i + 1 < vertices.size(); i++) {
+            int from = i < top ? vertices.get(i) : vertices.get(i + 1);
+            int to = i < top ? vertices.get(i + 1) : vertices.get(i);
+            boolean edge = false;
+            for (int x : G.adj(from)) {
+                edge |= x == to;
+            }
+            assertTrue(edge);
+        }
+    }
+    
+    // checks that every edge of G goes from a vertex to one later in order
+    private static void assertTopologicalOrder(Digraph G, int[] order) {
+        int[] position = new int[G.V()];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < order.length; i++) {
+            position[order[i]] = i;
+        }
+        for (int v = 0; v < G.V(); v++) {
+            assertTrue(position[v] != -1);
+            for (int w : G.adj(v)) {
+                assertTrue(position[v] < position[w]);
+            }
+        }
+    }
+    
+    // checks the index against bfs for every pair of vertices
+    private static void assertIndexMatchesBfs(Digraph G) {
+        SAP bfs = new SAP(G);
+        SAP indexed = new SAP(G, SAP.Strategy.ANCESTOR_INDEX, 0);
+        for (int v = 0; v < G.V(); v++) {
+            for (int w = 0; w < G.V(); w++) {
+                int length = bfs.length(v, w);
+                assertEquals(length, indexed.length(v, w));
+                assertEquals(length, distanceThrough(G, v, w, indexed.ancestor(v, w)));
+            }
+        }
+    }
+    
+    // length of the shortest v->a path plus the shortest w->a path; -1 if either is missing
+    private static int distanceThrough(Digraph G, int v, int w, int a) {
+        if (a == -1) {
+            return -1;
+        }
+        BreadthFirstDirectedPaths fromV = new BreadthFirstDirectedPaths(G, v);
+        BreadthFirstDirectedPaths fromW = new BreadthFirstDirectedPaths(G, w);
+        if (!fromV.hasPathTo(a) || !fromW.hasPathTo(a)) {
+            return -1;
+        }
+        return fromV.distTo(a) + fromW.distTo(a);
+    }
+    
+    private static boolean hasEdge(Digraph G, int v, int w) {
+        for (int x : G.adj(v)) {
+            if (x == w) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static List<Integer> toList(int[] vertices) {
+        List<Integer> list = new ArrayList<Integer>();
+        for (int v : vertices) {
+            list.add(v);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,78 @@
+import junit.framework.TestCase;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class SynsetStoreTest extends TestCase {
+    
+    public void testBuild_OrdersSynsetsById() {
+        SynsetStore.Builder builder = new SynsetStore.Builder();
+        builder.add(2, "c");
+        builder.add(0, "a b");
+        builder.add(1, "\u00e9t\u00e9");
+        SynsetStore synsets = builder.build();
+        
+        assertEquals(3, synsets.size());
+        assertEquals("a b", synsets.get(0));
+        assertEquals("\u00e9t\u00e9", synsets.get(1));
+        assertEquals("c", synsets.get(2));
+        assertEquals(3 + 5 + 1, synsets.byteSize());
+    }
+    
+    
+    public void testBuild_ThrowsExceptionWhenSynsetIsMissing() {
+        SynsetStore.Builder builder = new SynsetStore.Builder();
+        builder.add(0, "a");
+        builder.add(2, "c");
+        try {
+            builder.build();
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testAdd_ThrowsExceptionWhenSynsetIsDefinedTwice() {
+        SynsetStore.Builder builder = new SynsetStore.Builder();
+        builder.add(0, "a");
+        try {
+            builder.add(0, "b");
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testPut_ReplacesAndAppendsSynsets() {
+        SynsetStore.Builder builder = new SynsetStore.Builder();
+        builder.add(0, "a");
+        builder.add(1, "b");
+        SynsetStore synsets = builder.build();
+        synsets.put(1, "b c");
+        synsets.put(2, "d");
+        
+        assertEquals(3, synsets.size());
+        assertEquals("a", synsets.get(0));
+        assertEquals("b c", synsets.get(1));
+        assertEquals("d", synsets.get(2));
+        SynsetStore compacted = synsets.compacted();
+        assertEquals("b c", compacted.get(1));
+        assertEquals(1 + 3 + 1, compacted.byteSize());
+    }
+    
+    public void testGet_ReadsAView() {
+        ByteBuffer text = ByteBuffer.wrap("xyz".getBytes(StandardCharsets.UTF_8));
+        SynsetStore synsets = new SynsetStore(text, new int[] { 0, 1, 3 });
+        assertEquals("x", synsets.get(0));
+        assertEquals("yz", synsets.get(1));
+    }
+    
+    public void testGet_ThrowsExceptionWhenIdIsOutOfRange() {
+        SynsetStore synsets = new SynsetStore.Builder().build();
+        try {
+            synsets.get(0);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.BreadthFirstDirectedPaths;
+import edu.princeton.cs.algs4.Topological;
+import junit.framework.TestCase;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class TreeLCATest extends TestCase {
+    
+    public void testOf_DetectsForests() {
+        for (File file : hypernymsFiles()) {
+            Digraph G = readHypernyms(file, false);
+            boolean forest = new Topological(G).hasOrder();
+            for (int v = 0; v < G.V(); v++) {
+                forest = forest && G.outdegree(v) <= 1;
+            }
+            assertEquals(file.getName(), forest, TreeLCA.of(new CompactDigraph(G)) != null);
+        }
+    }
+    
+    public void testSearch_MatchesBfsOnSpanningForests() {
+        Random random = new Random(11);
+        for (File file : hypernymsFiles()) {
+            // the first hypernym of every synset
+            Digraph G = readHypernyms(file, true);
+            TreeLCA tree = TreeLCA.of(new CompactDigraph(G));
+            if (!new Topological(G).hasOrder()) {
+                assertNull(tree);
+                continue;
+            }
+            assertNotNull(file.getName(), tree);
+            
+            int queries = Math.min(G.V() * G.V(), 150);
+            for (int q = 0; q < queries; q++) {
+                int[] v = randomSet(random, G.V(), q < 100 ? 1 : 3);
+                int[] w = randomSet(random, G.V(), q < 100 ? 1 : 3);
+                int length = bfsLength(G, v, w);
+                long result = tree.search(v, w);
+                assertEquals(file.getName(), length, AncestorIndex.lengthOf(result));
+                assertEquals(length, bfsLength(G, v, new int[] { AncestorIndex.ancestorOf(result) }, w));
+                if (v.length == 1) {
+                    assertEquals(result, tree.search(v[0], w[0]));
+                }
+            }
+        }
+    }
+    
+    public void testAncestralPath_FollowsParents() {
+        Digraph G = readHypernyms(new File("../test-input/hypernyms15Tree.txt"), false);
+        TreeLCA tree = TreeLCA.of(new CompactDigraph(G));
+        assertEquals(1, tree.lca(7, 12));
+        
+        AncestralPath path = tree.ancestralPath(new int[] { 7 }, new int[] { 12 });
+        assertEquals(5, path.length());
+        assertEquals(1, path.ancestor());
+        List<Integer> vertices = new ArrayList<Integer>();
+        for (int x : path.path()) {
+            vertices.add(x);
+        }
+        assertEquals(Arrays.asList(7, 3, 1, 5, 10, 12), vertices);
+        
+        assertEquals(0, tree.ancestralPath(new int[] { 4 }, new int[] { 4 }).length());
+    }
+    
+    public void testSearch_ReturnsNoPathBetweenTrees() {
+        Digraph G = new Digraph(4);
+        G.addEdge(1, 0);
+        G.addEdge(3, 2);
+        TreeLCA tree = TreeLCA.of(new CompactDigraph(G));
+        assertEquals(-1, tree.lca(1, 3));
+        assertEquals(-1, AncestorIndex.lengthOf(tree.search(1, 3)));
+        assertFalse(tree.ancestralPath(new int[] { 1 }, new int[] { 3 }).path().iterator().hasNext());
+    }
+    
+    private static File[] hypernymsFiles() {
+        List<File> files = new ArrayList<File>();
+        for (File file : new File("../test-input").listFiles()) {
+            if (file.getName().startsWith("hypernyms")) {
+                files.add(file);
+            }
+        }
+        assertFalse(files.isEmpty());
+        return files.toArray(new File[0]);
+    }
+    
+    // digraph of a hypernyms file on as many vertices as its largest synset id needs,
+    // optionally keeping only the first hypernym of each synset
+    private static Digraph readHypernyms(File file, boolean firstOnly) {
+        String[] lines = new In(file.getPath()).readAllLines();
+        int V = 0;
+        for (String line : lines) {
+            for (String field : line.split(",")) {
+                V = Math.max(V, Integer.parseInt(field.trim()) + 1);
+            }
+        }
+        Digraph G = new Digraph(V);
+        for (String line : lines) {
+            String[] fields = line.split(",");
+            for (int i = 1; i < fields.length && (i == 1 || !firstOnly); i++) {
+                G.addEdge(Integer.parseInt(fields[0].trim()), Integer.parseInt(fields[i].trim()));
+            }
+        }
+        return G;
+    }
+    
+    private static int[] randomSet(Random random, int V, int size) {
+        int[] set = new int[size];
+        for (int i = 0; i < size; i++) {
+            set[i] = random.nextInt(V);
+        }
+        return set;
+    }
+    
+    // smallest sum over a vertex x of the distances from each set to x; -1 if no vertex is
+    // reached from every set. With the ancestor as the middle set, on a tree, this is the
+    // length of the ancestral path through it.
+    private static int bfsLength(Digraph G, int[]... sets) {
+        int[] total = new int[G.V()];
+        for (int[] set : sets) {
+            int[] best = new int[G.V()];
+            Arrays.fill(best, -1);
+            for (int s : set) {
+                if (s == -1) {
+                    return -1;
+                }
+                BreadthFirstDirectedPaths bfs = new BreadthFirstDirectedPaths(G, s);
+                for (int x = 0; x < G.V(); x++) {
+                    if (bfs.hasPathTo(x) && (best[x] == -1 || bfs.distTo(x) < best[x])) {
+                        best[x] = bfs.distTo(x);
+                    }
+                }
+            }
+            for (int x = 0; x < G.V(); x++) {
+                total[x] = best[x] == -1 || total[x] == -1 ? -1 : total[x] + best[x];
+            }
+        }
+        
+        int length = -1;
+        for (int x = 0; x < G.V(); x++) {
+            if (total[x] != -1 && (length == -1 || total[x] < length)) {
+                length = total[x];
+            }
+        }
+        return length;
+    }
+}
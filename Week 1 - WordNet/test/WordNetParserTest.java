@@ -0,0 +1,114 @@
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import junit.framework.TestCase;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+public class WordNetParserTest extends TestCase {
+    
+    public void testParseHypernyms_MatchesDigraphBuiltLineByLine() {
+        In in = new In("../test-input/hypernyms15Tree.txt");
+        Digraph G = new Digraph(15);
+        while (in.hasNextLine()) {
+            String[] fields = in.readLine().split(",");
+            for (int i = 1; i < fields.length; i++) {
+                G.addEdge(Integer.parseInt(fields[0]), Integer.parseInt(fields[i]));
+            }
+        }
+        
+        CompactDigraph expected = new CompactDigraph(G);
+        CompactDigraph parsed = WordNetParser.parseHypernyms("../test-input/hypernyms15Tree.txt", 15);
+        assertTrue(Arrays.equals(expected.offsets(), parsed.offsets()));
+        assertTrue(Arrays.equals(expected.targets(), parsed.targets()));
+    }
+    
+    public void testParseHypernyms_MergesChunksInFileOrder() throws IOException {
+        // long enough to be cut into several chunks
+        int V = 3 * WordNetParser.CHUNK / 10;
+        File file = tempFile();
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            for (int v = 1; v < V; v++) {
+                out.print(v + "," + (v - 1) + (v > 1 ? "," + (v / 2) : "") + "\r\n");
+            }
+        }
+        
+        CompactDigraph parsed = WordNetParser.parseHypernyms(file.getPath(), V);
+        assertEquals(2 * V - 3, parsed.E());
+        int[] offsets = parsed.offsets();
+        int[] targets = parsed.targets();
+        for (int v = 2; v < V; v++) {
+            // edges leaving v are kept in reverse order of insertion
+            assertEquals(2, parsed.outdegree(v));
+            assertEquals(v / 2, targets[offsets[v]]);
+            assertEquals(v - 1, targets[offsets[v] + 1]);
+        }
+    }
+    
+    public void testParseSynsets_ReadsSynonymSetsAndNouns() throws IOException {
+        File file = tempFile();
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.print("0,a b,first, with a comma\n");
+            out.print("1,b,second\r\n");
+            out.print("2,c_d,third");
+        }
+        
+        SynsetStore.Builder synsets = new SynsetStore.Builder();
+        NounIndex.Builder nouns = new NounIndex.Builder();
+        WordNetParser.parseSynsets(file.getPath(), synsets, nouns);
+        SynsetStore store = synsets.build();
+        NounIndex index = nouns.build();
+        
+        assertEquals(3, store.size());
+        assertEquals("a b", store.get(0));
+        assertEquals("b", store.get(1));
+        assertEquals("c_d", store.get(2));
+        assertEquals(3, index.size());
+        assertTrue(Arrays.equals(new int[] { 0, 1 }, index.synsetIds("b")));
+        assertTrue(Arrays.equals(new int[] { 2 }, index.synsetIds("c_d")));
+    }
+    
+    public void testParseHypernyms_IgnoresTrailingCommas() throws IOException {
+        File file = tempFile();
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.print("1,0,\n2,0,1,,\r\n3,\n");
+        }
+        
+        CompactDigraph parsed = WordNetParser.parseHypernyms(file.getPath(), 4);
+        assertEquals(3, parsed.E());
+        assertEquals(1, parsed.outdegree(1));
+        assertEquals(2, parsed.outdegree(2));
+        assertEquals(0, parsed.outdegree(3));
+    }
+    
+    public void testParseHypernyms_ThrowsExceptionWhenLineIsMalformed() throws IOException {
+        File file = tempFile();
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.print("1,0\n2,x\n");
+        }
+        
+        try {
+            WordNetParser.parseHypernyms(file.getPath(), 3);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testParseSynsets_ThrowsExceptionWhenFileDoesNotExist() {
+        try {
+            WordNetParser.parseSynsets("../test-input/missing.txt", new SynsetStore.Builder(), new NounIndex.Builder());
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("wordnet", ".txt");
+        file.deleteOnExit();
+        return file;
+    }
+}
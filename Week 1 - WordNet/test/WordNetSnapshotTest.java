@@ -0,0 +1,97 @@
+import junit.framework.TestCase;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+public class WordNetSnapshotTest extends TestCase {
+    
+    public void testRead_ReturnsWhatWasWritten() throws IOException {
+        WordNetSnapshot snapshot = new WordNetSnapshot(new int[] { 0, 1, 2, 2 }, new int[] { 1, 2 }, new int[] { 0, 1, 2 },
+                                                       synsets("a b", "\u00e9t\u00e9", "c"),
+                                                       new String[] { "a", "b", "c", "\u00e9t\u00e9" },
+                                                       new int[] { 0, 1, 2, 3, 4 }, new int[] { 0, 0, 2, 1 });
+        File file = tempFile();
+        snapshot.write(file.getPath());
+        
+        WordNetSnapshot read = WordNetSnapshot.read(file.getPath());
+        assertTrue(Arrays.equals(snapshot.offsets, read.offsets));
+        assertTrue(Arrays.equals(snapshot.targets, read.targets));
+        assertTrue(Arrays.equals(snapshot.order, read.order));
+        assertEquals(snapshot.synsets.size(), read.synsets.size());
+        for (int id = 0; id < snapshot.synsets.size(); id++) {
+            assertEquals(snapshot.synsets.get(id), read.synsets.get(id));
+        }
+        assertTrue(Arrays.equals(snapshot.nouns, read.nouns));
+        assertTrue(Arrays.equals(snapshot.idStart, read.idStart));
+        assertTrue(Arrays.equals(snapshot.ids, read.ids));
+    }
+    
+    public void testRead_ThrowsExceptionWhenFileIsTruncated() throws IOException {
+        WordNetSnapshot snapshot = new WordNetSnapshot(new int[] { 0, 1, 1 }, new int[] { 1 }, new int[] { 0, 1 },
+                                                       synsets("a", "b"), new String[] { "a", "b" },
+                                                       new int[] { 0, 1, 2 }, new int[] { 0, 1 });
+        File file = tempFile();
+        snapshot.write(file.getPath());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 4);
+        }
+        
+        try {
+            WordNetSnapshot.read(file.getPath());
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testRead_ThrowsExceptionWhenFileIsCorrupt() throws IOException {
+        WordNetSnapshot snapshot = new WordNetSnapshot(new int[] { 0, 1, 1 }, new int[] { 1 }, new int[] { 0, 1 },
+                                                       synsets("a", "b"), new String[] { "a", "b" },
+                                                       new int[] { 0, 1, 2 }, new int[] { 0, 1 });
+        
+        // byte positions of ints and the values that corrupt them: the edge target, the
+        // order (a repeated vertex, then reversed against the edge) and the synset id of a noun
+        int[][] corruptions = { { 32, 2 }, { 40, 0 }, { 36, 1, 40, 0 }, { 84, 2 }, { 84, -1 } };
+        for (int[] corruption : corruptions) {
+            File file = tempFile();
+            snapshot.write(file.getPath());
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                for (int i = 0; i < corruption.length; i += 2) {
+                    raf.seek(corruption[i]);
+                    raf.writeInt(corruption[i + 1]);
+                }
+            }
+            
+            try {
+                WordNetSnapshot.read(file.getPath());
+                fail("Exception should have been thrown");
+            } catch (final IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+    
+    public void testRead_ThrowsExceptionWhenFileDoesNotExist() {
+        try {
+            WordNetSnapshot.read("../test-input/missing.snapshot");
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    private static SynsetStore synsets(String... synonymSets) {
+        SynsetStore.Builder builder = new SynsetStore.Builder();
+        for (int id = 0; id < synonymSets.length; id++) {
+            builder.add(id, synonymSets[id]);
+        }
+        return builder.build();
+    }
+    
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("wordnet", ".snapshot");
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -1,4 +1,16 @@
 import junit.framework.TestCase;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class WordNetTest extends TestCase {
     
@@ -79,4 +91,295 @@ public class WordNetTest extends TestCase {
             // expected
         }
     }
-}
\ No newline at end of file
+    
+    public void testAncestralPath() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        AncestralPath path = wordnet.ancestralPath("h", "m");
+        assertEquals(5, path.length());
+        assertEquals(1, path.ancestor());
+        assertEquals(Arrays.asList(7, 3, 1, 5, 10, 12), path.path());
+        assertEquals(wordnet.distance("h", "m"), path.length());
+    }
+    
+    public void testDistances() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        String[] nouns = { "h", "i", "d", "o" };
+        int[][] distances = wordnet.distances(nouns);
+        
+        for (int i = 0; i < nouns.length; i++) {
+            for (int j = 0; j < nouns.length; j++) {
+                assertEquals(wordnet.distance(nouns[i], nouns[j]), distances[i][j]);
+            }
+        }
+        assertEquals(7, distances[0][3]);
+    }
+    
+    public void testDistancesToNoun() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        String[] nouns = { "h", "i", "d", "o", "m" };
+        int[] distances = wordnet.distances("h", nouns);
+        
+        for (int i = 0; i < nouns.length; i++) {
+            assertEquals(wordnet.distance(nouns[i], "h"), distances[i]);
+        }
+        assertEquals(0, distances[0]);
+    }
+    
+    public void testNearest_MatchesDistanceToEveryNoun() {
+        String[][] files = {
+            { "synsets15.txt", "hypernyms15Tree.txt" },
+            { "synsets8.txt", "hypernyms8ManyAncestors.txt" },
+            { "synsets11.txt", "hypernyms11AmbiguousAncestor.txt" },
+            { "synsets6.txt", "hypernyms6TwoAncestors.txt" },
+            { "synsets100-subgraph.txt", "hypernyms100-subgraph.txt" }
+        };
+        for (String[] file : files) {
+            final WordNet wordnet = new WordNet("../test-input/" + file[0], "../test-input/" + file[1]);
+            List<String> nouns = toList(wordnet.nouns());
+            for (final String noun : nouns) {
+                List<String> others = new ArrayList<String>(nouns);
+                others.remove(noun);
+                Collections.sort(others, new Comparator<String>() {
+                    public int compare(String a, String b) {
+                        int d = Integer.compare(wordnet.distance(noun, a), wordnet.distance(noun, b));
+                        return d != 0 ? d : a.compareTo(b);
+                    }
+                });
+                int[] ks = { 1, 2, 3, others.size() / 2 + 1, others.size(), others.size() + 1 };
+                for (int k : ks) {
+                    assertEquals(others.subList(0, Math.min(k, others.size())), toList(wordnet.nearest(noun, k)));
+                }
+            }
+        }
+    }
+    
+    public void testNearest_SeesAddedSynset() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        List<String> before = toList(wordnet.nearest("a", 14));
+        assertFalse(before.contains("p"));
+        
+        // synset 0 is the root, whose noun is "a"
+        wordnet.addSynset("p", 0);
+        assertEquals(Arrays.asList("a"), toList(wordnet.nearest("p", 1)));
+        List<String> after = toList(wordnet.nearest("a", 15));
+        assertTrue(after.contains("p"));
+        after.remove("p");
+        assertEquals(before, after);
+    }
+    
+    public void testNearest_MatchesDistanceAfterChanges() {
+        final WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        
+        // q3 is three levels up from q0, but two down from the root, also a hypernym of q0
+        int q3 = wordnet.addSynset("q3", 0);
+        int q2 = wordnet.addSynset("q2", q3);
+        int q1 = wordnet.addSynset("q1", q2);
+        wordnet.addSynset("q0", q1, 0);
+        wordnet.addNoun("b", q2);
+        wordnet.addNoun("q1", 5);
+        
+        List<String> nouns = toList(wordnet.nouns());
+        for (final String noun : nouns) {
+            List<String> others = new ArrayList<String>(nouns);
+            others.remove(noun);
+            Collections.sort(others, new Comparator<String>() {
+                public int compare(String a, String b) {
+                    int d = Integer.compare(wordnet.distance(noun, a), wordnet.distance(noun, b));
+                    return d != 0 ? d : a.compareTo(b);
+                }
+            });
+            for (int k = 1; k <= others.size(); k++) {
+                assertEquals(others.subList(0, k), toList(wordnet.nearest(noun, k)));
+            }
+        }
+    }
+    
+    public void testNearest_ThrowsExceptionWhenKIsNotPositive() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        try {
+            wordnet.nearest("a", 0);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testDistances_ThrowsExceptionWhenNounIsNotAWordnetNoun() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        try {
+            wordnet.distances(new String[] { "a", "2word2" });
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testLoad_AnswersQueriesLikeTheSavedWordNet() throws IOException {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        File snapshot = File.createTempFile("wordnet", ".snapshot");
+        snapshot.deleteOnExit();
+        wordnet.save(snapshot.getPath());
+        
+        WordNet loaded = WordNet.load(snapshot.getPath(), SAP.Strategy.ANCESTOR_INDEX, 16);
+        assertEquals(toList(wordnet.nouns()), toList(loaded.nouns()));
+        for (String nounA : wordnet.nouns()) {
+            assertTrue(loaded.isNoun(nounA));
+            for (String nounB : wordnet.nouns()) {
+                assertEquals(wordnet.distance(nounA, nounB), loaded.distance(nounA, nounB));
+                assertEquals(wordnet.sap(nounA, nounB), loaded.sap(nounA, nounB));
+            }
+        }
+        assertFalse(loaded.isNoun("2word2"));
+    }
+    
+    public void testLoad_ThrowsExceptionWhenFileIsNotASnapshot() {
+        try {
+            WordNet.load("../test-input/synsets15.txt");
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testAddSynset_AnswersQueriesLikeTheWordNetReadWithIt() throws IOException {
+        WordNet full = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        String[] synsets = Files.readAllLines(Paths.get("../test-input/synsets15.txt")).toArray(new String[0]);
+        String[] hypernyms = Files.readAllLines(Paths.get("../test-input/hypernyms15Tree.txt")).toArray(new String[0]);
+        File synsetsFile = File.createTempFile("synsets", ".txt");
+        File hypernymsFile = File.createTempFile("hypernyms", ".txt");
+        synsetsFile.deleteOnExit();
+        hypernymsFile.deleteOnExit();
+        Files.write(synsetsFile.toPath(), Arrays.asList(synsets).subList(0, 6));
+        Files.write(hypernymsFile.toPath(), Arrays.asList(hypernyms).subList(0, 6));
+        
+        SAP.Strategy[] strategies = { SAP.Strategy.BFS, SAP.Strategy.ANCESTOR_INDEX };
+        for (SAP.Strategy strategy : strategies) {
+            WordNet wordnet = new WordNet(synsetsFile.getPath(), hypernymsFile.getPath(), strategy, 64);
+            wordnet.distance("a", "f");
+            
+            // synset 6 is a hyponym of 10, which comes later: hang it under 5 until then
+            for (int id = 6; id < synsets.length; id++) {
+                String synonymSet = synsets[id].split(",")[1];
+                String[] fields = hypernyms[id].split(",");
+                int hypernym = id == 6 ? 5 : Integer.parseInt(fields[1]);
+                assertEquals(id, wordnet.addSynset(synonymSet, hypernym));
+                wordnet.distance("a", synonymSet);
+            }
+            wordnet.addHypernym(6, 10);
+            wordnet.removeHypernym(6, 5);
+            
+            assertEquals(toList(full.nouns()), toList(wordnet.nouns()));
+            for (String nounA : full.nouns()) {
+                for (String nounB : full.nouns()) {
+                    assertEquals(full.distance(nounA, nounB), wordnet.distance(nounA, nounB));
+                    assertEquals(full.sap(nounA, nounB), wordnet.sap(nounA, nounB));
+                }
+            }
+            
+            File snapshot = File.createTempFile("wordnet", ".snapshot");
+            snapshot.deleteOnExit();
+            wordnet.save(snapshot.getPath());
+            WordNet loaded = WordNet.load(snapshot.getPath());
+            assertEquals(toList(full.nouns()), toList(loaded.nouns()));
+            assertEquals(full.distance("h", "o"), loaded.distance("h", "o"));
+            assertEquals(full.sap("n", "j"), loaded.sap("n", "j"));
+        }
+    }
+    
+    public void testAddSynset_WhileOtherThreadsQuery() throws Exception {
+        final WordNet wordnet = new WordNet("../test-input/synsets100-subgraph.txt",
+                                            "../test-input/hypernyms100-subgraph.txt", 64);
+        final List<String> nouns = toList(wordnet.nouns());
+        final int[] expected = new int[nouns.size()];
+        for (int i = 0; i < nouns.size(); i++) {
+            expected[i] = wordnet.distance(nouns.get(0), nouns.get(i));
+        }
+        
+        // nothing reaches an added synset, so the distances between the other nouns stay
+        // the same, and an added noun is found only with its synset in place
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (int round = 0; !done.get(); round++) {
+                        int i = round % nouns.size();
+                        assertEquals(expected[i], wordnet.distance(nouns.get(0), nouns.get(i)));
+                        String added = "added" + (round % 200);
+                        if (wordnet.isNoun(added)) {
+                            assertEquals(added, wordnet.sap(added, added));
+                            assertTrue(wordnet.distance(nouns.get(0), added) > 0);
+                            assertTrue(wordnet.nearest(added, 1).iterator().hasNext());
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        });
+        reader.start();
+        Random random = new Random(7);
+        int synsets = 100;
+        for (int i = 0; i < 200; i++) {
+            wordnet.addSynset("added" + i, random.nextInt(synsets));
+        }
+        done.set(true);
+        reader.join();
+        
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(nouns.size() + 200, toList(wordnet.nouns()).size());
+    }
+    
+    public void testAddSynset_ThrowsExceptionWhenSynsetHasNoHypernym() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        try {
+            wordnet.addSynset("p");
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testAddNoun_AddsNounToSynonymSet() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        wordnet.addNoun("p", 7);
+        wordnet.addNoun("h", 7);
+        
+        assertTrue(wordnet.isNoun("p"));
+        assertEquals(0, wordnet.distance("p", "h"));
+        assertEquals(wordnet.distance("h", "m"), wordnet.distance("p", "m"));
+        assertEquals("h p", wordnet.sap("h", "p"));
+        assertEquals(16, toList(wordnet.nouns()).size());
+    }
+    
+    public void testAddHypernym_ThrowsExceptionWhenEdgeWouldCreateCycle() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        try {
+            wordnet.addHypernym(0, 14);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(6, wordnet.distance("a", "o"));
+    }
+    
+    public void testRemoveHypernym_ThrowsExceptionWhenSynsetWouldBecomeARoot() {
+        WordNet wordnet = new WordNet("../test-input/synsets15.txt", "../test-input/hypernyms15Tree.txt");
+        try {
+            wordnet.removeHypernym(1, 0);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    private static List<String> toList(Iterable<String> nouns) {
+        List<String> list = new ArrayList<String>();
+        for (String noun : nouns) {
+            list.add(noun);
+        }
+        return list;
+    }
+}
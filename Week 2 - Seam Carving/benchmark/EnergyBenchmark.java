@@ -0,0 +1,47 @@
+/******************************************************************************
+ *  Compilation:  javac EnergyBenchmark.java
+ *                javac --add-modules jdk.incubator.vector ../src-vector/VectorEnergy.java
+ *  Execution:    java --add-modules jdk.incubator.vector EnergyBenchmark width height
+ *  Dependencies: SeamCarver.java VectorEnergy.java SCUtility.java
+ *
+ *  Create a random width-by-height picture with SCUtility.randomPicture and
+ *  time the SeamCarver constructor, which computes the energy of every pixel,
+ *  with the scalar formula and with the VectorEnergy kernel. Without
+ *  --add-modules jdk.incubator.vector, or without VectorEnergy on the class
+ *  path, both are scalar.
+ *
+ *  % java --add-modules jdk.incubator.vector EnergyBenchmark 2000 2000
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Picture;
+import edu.princeton.cs.algs4.StdOut;
+
+public class EnergyBenchmark {
+    
+    public static void main(String[] args) {
+        int width = Integer.parseInt(args[0]);
+        int height = Integer.parseInt(args[1]);
+        Picture picture = SCUtility.randomPicture(width, height);
+        
+        // the best of several rounds, so that the first ones warm the code up
+        double scalarTime = Double.POSITIVE_INFINITY;
+        double vectorTime = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            SeamCarver scalar = new SeamCarver(picture, false);
+            long middle = System.nanoTime();
+            SeamCarver vector = new SeamCarver(picture, true);
+            long end = System.nanoTime();
+            if (scalar.energy(width / 2, height / 2) != vector.energy(width / 2, height / 2)) {
+                throw new IllegalStateException("the energies differ");
+            }
+            scalarTime = Math.min(scalarTime, middle - start);
+            vectorTime = Math.min(vectorTime, end - middle);
+        }
+        
+        StdOut.printf("%d-by-%d picture\n", width, height);
+        StdOut.printf("scalar energies: %8.1f ms\n", scalarTime / 1e6);
+        StdOut.printf("vector energies: %8.1f ms\n", vectorTime / 1e6);
+    }
+}
@@ -0,0 +1,56 @@
+/******************************************************************************
+ *  Compilation:  javac ParallelSeamBenchmark.java
+ *  Execution:    java ParallelSeamBenchmark width height [seams]
+ *  Dependencies: SeamCarver.java SCUtility.java
+ *
+ *  Create a random width-by-height picture with SCUtility.randomPicture and
+ *  time findVerticalSeam with every row relaxed on one thread, and with the
+ *  rows split into chunks relaxed by fork-join tasks, as SeamCarver does for
+ *  pictures at least SeamCarver.PARALLEL_WIDTH wide. The seams found must be
+ *  the same.
+ *
+ *  % java ParallelSeamBenchmark 3840 2160
+ *  % java -Xmx3g ParallelSeamBenchmark 7680 4320 5
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Picture;
+import edu.princeton.cs.algs4.StdOut;
+import java.util.Arrays;
+
+public class ParallelSeamBenchmark {
+    
+    public static void main(String[] args) {
+        int width = Integer.parseInt(args[0]);
+        int height = Integer.parseInt(args[1]);
+        int seams = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        Picture picture = SCUtility.randomPicture(width, height);
+        
+        SeamCarver sequential = new SeamCarver(picture);
+        sequential.parallelRows(Integer.MAX_VALUE, SeamCarver.PARALLEL_CHUNK);
+        SeamCarver parallel = new SeamCarver(picture);
+        parallel.parallelRows(SeamCarver.PARALLEL_WIDTH, SeamCarver.PARALLEL_CHUNK);
+        
+        // the best of several rounds, so that the first ones warm the code up
+        double sequentialTime = Double.POSITIVE_INFINITY;
+        double parallelTime = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < seams; i++) {
+                long start = System.nanoTime();
+                int[] seam = sequential.findVerticalSeam();
+                long middle = System.nanoTime();
+                int[] parallelSeam = parallel.findVerticalSeam();
+                long end = System.nanoTime();
+                if (!Arrays.equals(seam, parallelSeam)) {
+                    throw new IllegalStateException("the parallel search found another seam");
+                }
+                sequentialTime = Math.min(sequentialTime, middle - start);
+                parallelTime = Math.min(parallelTime, end - middle);
+            }
+        }
+        
+        StdOut.printf("%d-by-%d picture, %d threads\n", width, height, Runtime.getRuntime().availableProcessors());
+        StdOut.printf("sequential rows: %8.1f ms/seam\n", sequentialTime / 1e6);
+        StdOut.printf("parallel rows:   %8.1f ms/seam\n", parallelTime / 1e6);
+    }
+}
@@ -0,0 +1,69 @@
+/******************************************************************************
+ *  Compilation:  javac ResizeBenchmark.java
+ *  Execution:    java ResizeBenchmark input.png columnsToRemove rowsToRemove
+ *  Dependencies: SeamCarver.java
+ *
+ *  Read image from file specified as command line argument and time the
+ *  ResizeDemo loop, finding and removing the number of horizontal and vertical
+ *  seams specified as command line arguments, without showing the images.
+ *  Print the time per seam and a checksum of the resized picture, which stays
+ *  the same as long as the seams found do.
+ *
+ *  % java ResizeBenchmark ../test-input/HJocean.png 300 100
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Picture;
+import edu.princeton.cs.algs4.StdOut;
+
+public class ResizeBenchmark {
+    
+    public static void main(String[] args) {
+        Picture inputImg = new Picture(args[0]);
+        int removeColumns = Integer.parseInt(args[1]);
+        int removeRows = Integer.parseInt(args[2]);
+        StdOut.printf("image is %d columns by %d rows\n", inputImg.width(), inputImg.height());
+        
+        // the best of several rounds, so that the first ones warm the code up
+        double rowTime = Double.POSITIVE_INFINITY;
+        double columnTime = Double.POSITIVE_INFINITY;
+        long checksum = 0;
+        for (int round = 0; round < 5; round++) {
+            SeamCarver sc = new SeamCarver(inputImg);
+            
+            long start = System.nanoTime();
+            for (int i = 0; i < removeRows; i++) {
+                sc.removeHorizontalSeam(sc.findHorizontalSeam());
+            }
+            long rows = System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            for (int i = 0; i < removeColumns; i++) {
+                sc.removeVerticalSeam(sc.findVerticalSeam());
+            }
+            long columns = System.nanoTime() - start;
+            
+            if (removeRows > 0) {
+                rowTime = Math.min(rowTime, (double) rows / removeRows);
+            }
+            if (removeColumns > 0) {
+                columnTime = Math.min(columnTime, (double) columns / removeColumns);
+            }
+            checksum = checksum(sc.picture());
+        }
+        
+        StdOut.printf("horizontal seams: %8.1f us/seam\n", rowTime / 1000);
+        StdOut.printf("vertical seams:   %8.1f us/seam\n", columnTime / 1000);
+        StdOut.printf("checksum %016x\n", checksum);
+    }
+    
+    private static long checksum(Picture picture) {
+        long checksum = picture.width() * 31L + picture.height();
+        for (int y = 0; y < picture.height(); y++) {
+            for (int x = 0; x < picture.width(); x++) {
+                checksum = checksum * 1000003L + picture.getRGB(x, y);
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,60 @@
+/******************************************************************************
+ *  Compilation:  javac SeamCarverBenchmark.java
+ *  Execution:    java SeamCarverBenchmark width height [seams]
+ *  Dependencies: SeamCarver.java SCUtility.java
+ *
+ *  Create a random width-by-height picture with SCUtility.randomPicture and
+ *  time findVerticalSeam, removeVerticalSeam, findHorizontalSeam and
+ *  removeHorizontalSeam on it, each alternated with the other so that the
+ *  picture loses the given number of columns and rows.
+ *
+ *  % java SeamCarverBenchmark 1000 1000
+ *  % java SeamCarverBenchmark 2000 2000 20
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Picture;
+import edu.princeton.cs.algs4.StdOut;
+
+public class SeamCarverBenchmark {
+    
+    public static void main(String[] args) {
+        int width = Integer.parseInt(args[0]);
+        int height = Integer.parseInt(args[1]);
+        int seams = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        Picture picture = SCUtility.randomPicture(width, height);
+        
+        // the best of several rounds, so that the first ones warm the code up
+        long[] best = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+        for (int round = 0; round < 5; round++) {
+            SeamCarver sc = new SeamCarver(picture);
+            long[] nanos = new long[4];
+            for (int i = 0; i < seams; i++) {
+                long start = System.nanoTime();
+                int[] seam = sc.findVerticalSeam();
+                long found = System.nanoTime();
+                sc.removeVerticalSeam(seam);
+                long removed = System.nanoTime();
+                nanos[0] += found - start;
+                nanos[1] += removed - found;
+                
+                start = System.nanoTime();
+                seam = sc.findHorizontalSeam();
+                found = System.nanoTime();
+                sc.removeHorizontalSeam(seam);
+                removed = System.nanoTime();
+                nanos[2] += found - start;
+                nanos[3] += removed - found;
+            }
+            for (int k = 0; k < 4; k++) {
+                best[k] = Math.min(best[k], nanos[k]);
+            }
+        }
+        
+        String[] names = { "findVerticalSeam", "removeVerticalSeam", "findHorizontalSeam", "removeHorizontalSeam" };
+        StdOut.printf("%d-by-%d picture, %d seams each way\n", width, height, seams);
+        for (int k = 0; k < 4; k++) {
+            StdOut.printf("%-21s %8.1f us\n", names[k], best[k] / 1000.0 / seams);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// dual-gradient energies of the interior pixels of a row, computed with the SIMD lanes of the
+// incubating Vector API. Compiling and running it takes --add-modules jdk.incubator.vector,
+// so it lives apart from src/, which compiles without the flag. SeamCarver finds it by
+// reflection, only when that module is present, and uses its scalar energy otherwise.
+//
+//   % javac --add-modules jdk.incubator.vector -d <classes of src/> VectorEnergy.java
+public final class VectorEnergy {
+    
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    
+    // as wide as INTS, so half as many lanes: each vector of ints converts to two of doubles
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    
+    private VectorEnergy() { }
+    
+    // energies[y * stride + x] for 0 < x < width - 1 of interior row y of the row-major
+    // pixels: a lane per pixel unpacks R, G and B with shifts and masks, squares and adds
+    // the gradients as ints, and takes the square root as a double. Both steps are exact,
+    // so the energies are bit-for-bit those of SeamCarver's scalar energy
+    public static void row(int[] pixels, int stride, int width, int y, double[] energies) {
+        int start = y * stride;
+        int bound = 1 + INTS.loopBound(width - 2);
+        int x = 1;
+        for (; x < bound; x += INTS.length()) {
+            int i = start + x;
+            IntVector left = IntVector.fromArray(INTS, pixels, i - 1);
+            IntVector right = IntVector.fromArray(INTS, pixels, i + 1);
+            IntVector up = IntVector.fromArray(INTS, pixels, i - stride);
+            IntVector down = IntVector.fromArray(INTS, pixels, i + stride);
+            IntVector squared = squaredGradient(left, right).add(squaredGradient(up, down));
+            for (int part = 0; part * DOUBLES.length() < INTS.length(); part++) {
+                DoubleVector energy = (DoubleVector) squared.convertShape(VectorOperators.I2D, DOUBLES, part);
+                energy.lanewise(VectorOperators.SQRT).intoArray(energies, i + part * DOUBLES.length());
+            }
+        }
+        
+        // the pixels left over, one at a time
+        for (; x < width - 1; x++) {
+            int i = start + x;
+            int squared = squaredGradient(pixels[i - 1], pixels[i + 1]) + squaredGradient(pixels[i - stride], pixels[i + stride]);
+            energies[i] = Math.sqrt(squared);
+        }
+    }
+    
+    // square of the gradient, lane by lane
+    private static IntVector squaredGradient(IntVector lcolor, IntVector rcolor) {
+        IntVector r = channel(rcolor, 16).sub(channel(lcolor, 16));
+        IntVector g = channel(rcolor, 8).sub(channel(lcolor, 8));
+        IntVector b = channel(rcolor, 0).sub(channel(lcolor, 0));
+        return r.mul(r).add(g.mul(g)).add(b.mul(b));
+    }
+    
+    private static IntVector channel(IntVector color, int shift) {
+        return color.lanewise(VectorOperators.ASHR, shift).and(0xFF);
+    }
+    
+    // square of the gradient: R^2 + G^2 + B^2
+    private static int squaredGradient(int lcolor, int rcolor) {
+        int rx = ((rcolor >> 16) & 0xFF) - ((lcolor >> 16) & 0xFF);
+        int gx = ((rcolor >> 8) & 0xFF) - ((lcolor >> 8) & 0xFF);
+        int bx = (rcolor & 0xFF) - (lcolor & 0xFF);
+        return (rx * rx) + (gx * gx) + (bx * bx);
+    }
+}
@@ -1,33 +1,95 @@
 import edu.princeton.cs.algs4.Picture;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class SeamCarver {
     
     private static final double MAX_ENERGY = 1000;
     
+    // buffers at least PARALLEL_WIDTH wide have the rows of the seam search split into chunks
+    // of at least PARALLEL_CHUNK columns, relaxed by fork-join tasks. Narrower rows cost less
+    // to relax than to hand out, and on a single core nothing is split
+    static final int PARALLEL_WIDTH = 2048;
+    static final int PARALLEL_CHUNK = 512;
+    
+    // VectorEnergy.row, which computes the energies of a row in SIMD lanes, if VectorEnergy
+    // (compiled from src-vector/) is on the class path and jdk.incubator.vector is present;
+    // null otherwise
+    private static final MethodHandle VECTOR_ROW = vectorRow();
+    
+    // width and height of the buffers, which hold the picture transposed while transposed;
+    // width() and height() are those of the picture
     private int width;
     private int height;
-    private int[][] pixels;
+    
+    // the buffers are row-major, so that the seam search walks them sequentially: pixel
+    // (x, y) of the buffers is at index y * stride + x. Removing a seam shrinks width or
+    // height, never stride. Horizontal seams are found and removed as vertical seams of the
+    // transposed picture: the buffers are transposed on the first horizontal operation after
+    // a vertical one (or the other way round), so a run of either kind pays for it once
+    private int stride;                 // length of a row in the buffers, at least width
+    private boolean transposed;         // true if the buffers hold the picture transposed
+    private int[] pixels;
+    private double[] energies;          // energy of every pixel, kept up to date as seams are removed
+    private int[] sparePixels;          // what transpose() writes to; allocated on first use
+    private double[] spareEnergies;
+    private final int[] edgeTo;         // column of the previous pixel on the best vertical
+                                        // seam to each pixel; reused by every search
+    private final double[] energyTo;    // energy of the best seam to each pixel of the current row,
+    private final double[] oldEnergyTo; // and of the previous one; reused too
+    
+    private int parallelWidth = ForkJoinPool.getCommonPoolParallelism() > 1 ? PARALLEL_WIDTH : Integer.MAX_VALUE;
+    private int parallelChunk = PARALLEL_CHUNK;
     
     // create a seam carver object based on the given picture
     public SeamCarver(Picture p) {
+        this(p, VECTOR_ROW != null);
+    }
+    
+    // create a seam carver object, computing the energies with VectorEnergy if vectorized
+    // (and VectorEnergy is available) or with energy's scalar formula otherwise
+    SeamCarver(Picture p, boolean vectorized) {
         if (p == null) {
             throw new IllegalArgumentException("p cannot be null.");
         }
         
         width = p.width();
         height = p.height();
-        pixels = new int[width][height];
+        stride = width;
+        pixels = new int[width * height];
+        energies = new double[width * height];
+        edgeTo = new int[width * height];
+        energyTo = new double[Math.max(width, height)];
+        oldEnergyTo = new double[Math.max(width, height)];
         
         storePictureData(p);
+        for (int y = 0; y < height; y++) {
+            if (vectorized && VECTOR_ROW != null && y > 0 && y < height - 1 && width > 2) {
+                energies[y * stride] = MAX_ENERGY;
+                energies[y * stride + width - 1] = MAX_ENERGY;
+                computeVectorRow(y);
+            } else {
+                for (int x = 0; x < width; x++) {
+                    energies[y * stride + x] = computeEnergy(x, y);
+                }
+            }
+        }
     }
     
     // current picture
     public Picture picture() {
-        Picture p = new Picture(width, height);
+        Picture p = new Picture(width(), height());
         
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                p.setRGB(x, y, pixels[x][y]);
+                if (transposed) {
+                    p.setRGB(y, x, pixels[y * stride + x]);
+                } else {
+                    p.setRGB(x, y, pixels[y * stride + x]);
+                }
             }
         }
         
@@ -36,47 +98,114 @@ public class SeamCarver {
     
     // width of current picture
     public int width() {
-        return width;
+        return transposed ? height : width;
     }
     
     // height of current picture
     public int height() {
-        return height;
+        return transposed ? width : height;
     }
     
     // energy of pixel at column x and row y
     public double energy(int x, int y) {
-        if (x < 0 || x > width - 1) {
+        if (x < 0 || x > width() - 1) {
             throw new IllegalArgumentException("x is outside its prescribed range.");
         }
         
-        if (y < 0 || y > height - 1) {
+        if (y < 0 || y > height() - 1) {
             throw new IllegalArgumentException("y is outside its prescribed range.");
         }
         
-        // define the energy of a pixel at the border of the image to be 1000
-        if (x == 0 || x == width - 1 ||
-            y == 0 || y == height - 1) {
-            return MAX_ENERGY;
-        } else {
-            // get the energy of the interior pixel.        
-            int deltaX = getSquaredGradient(pixels[x - 1][y], pixels[x + 1][y]);
-            int deltaY = getSquaredGradient(pixels[x][y - 1], pixels[x][y + 1]);
-            return Math.sqrt(deltaX + deltaY);
-        }
+        return transposed ? energies[x * stride + y] : energies[y * stride + x];
     }
     
     // sequence of indices for horizontal seam
     public int[] findHorizontalSeam() {
-        transpose();
-        int[] seam = findVerticalSeam();
-        transpose();
-        
-        return seam;
+        orient(true);
+        return findSeam();
     }
     
     // sequence of indices for vertical seam
     public int[] findVerticalSeam() {
+        orient(false);
+        return findSeam();
+    }
+    
+    // remove horizontal seam from curent picture
+    public void removeHorizontalSeam(int[] seam) {
+        checkSeamValidity(seam, false);
+        
+        orient(true);
+        removeSeam(seam);
+    }
+    
+    // remove vertical seam from curent picture
+    public void removeVerticalSeam(int[] seam) {
+        checkSeamValidity(seam, true);
+        
+        orient(false);
+        removeSeam(seam);
+    }
+    
+    // relaxes the rows of the seam search in parallel when the buffers are at least width
+    // wide, in chunks of at least chunk columns
+    void parallelRows(int width, int chunk) {
+        if (width < 1 || chunk < 1) {
+            throw new IllegalArgumentException("width and chunk must be positive.");
+        }
+        
+        parallelWidth = width;
+        parallelChunk = chunk;
+    }
+    
+    // unit testing
+    public static void main(String[] args) {
+        // run PrintEnergy ../test-input/6x5.png
+        // run ShowEnergy ../test-input/HJocean.png
+        // run ShowSeams ../test-input/HJocean.png
+        // run PrintSeams ../test-input/6x5.png
+        // run ResizeDemo ../test-input/HJocean.png 300 0
+    }
+    
+    // transposes the buffers unless they already hold the picture transposed if and only if
+    // transpose is true. The transposed rows are packed, stride becoming the new width; the
+    // copy goes by tiles, so that both buffers are walked a few cache lines at a time
+    private void orient(boolean transpose) {
+        if (transposed == transpose) {
+            return;
+        }
+        if (sparePixels == null) {
+            sparePixels = new int[pixels.length];
+            spareEnergies = new double[energies.length];
+        }
+        
+        final int tile = 32;
+        for (int y0 = 0; y0 < height; y0 += tile) {
+            for (int x0 = 0; x0 < width; x0 += tile) {
+                for (int y = y0; y < Math.min(height, y0 + tile); y++) {
+                    for (int x = x0; x < Math.min(width, x0 + tile); x++) {
+                        sparePixels[x * height + y] = pixels[y * stride + x];
+                        spareEnergies[x * height + y] = energies[y * stride + x];
+                    }
+                }
+            }
+        }
+        
+        int[] p = pixels;
+        pixels = sparePixels;
+        sparePixels = p;
+        double[] e = energies;
+        energies = spareEnergies;
+        spareEnergies = e;
+        int w = width;
+        width = height;
+        height = w;
+        stride = width;
+        transposed = transpose;
+    }
+    
+    // the vertical seam of the buffers
+    private int[] findSeam() {
         int[] seam = new int[height];
         
         // if length is 1, return all indices as zero
@@ -84,10 +213,6 @@ public class SeamCarver {
             return seam;
         }
         
-        double[] energyTo = new double[width];
-        double[] oldEnergyTo = new double[width];
-        int[][] edgeTo = new int[width][height];
-        
         // * what is the total energy of the smallest path that got to this pixel?
         // * what is the X value of the pixel in the row above that's part of that smallest path?
         //   Or at least, which pixel above does it want, since there are only three possibilities
@@ -96,9 +221,17 @@ public class SeamCarver {
         // At the bottom, look around for the bottom pixel with the lowest total energy.
         // This is the end of the smallest seam. This pixel knows which pixel above it (up left, up, or up right)
         // is part of the seam so you can work back to the top and you have the seam.
+        // 
+        // A pixel only depends on the row above, so the pixels of a row can be relaxed in any
+        // order, or in parallel, and the seam found is the same.
+        boolean parallel = width >= parallelWidth;
         for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                relaxVertically(x, y, energyTo, oldEnergyTo, edgeTo);
+            if (parallel) {
+                new RowTask(y, 0, width).invoke();
+            } else {
+                for (int x = 0; x < width; x++) {
+                    relaxVertically(x, y);
+                }
             }
             System.arraycopy(energyTo, 0, oldEnergyTo, 0, width);
         }
@@ -115,53 +248,45 @@ public class SeamCarver {
         
         // determine seam
         seam[height - 1] = best;
-
+        
         for (int y = height - 2; y >= 0; y--) {
-            seam[y] = edgeTo[best][y + 1];
-            best = edgeTo[best][y + 1];
+            seam[y] = edgeTo[(y + 1) * stride + best];
+            best = seam[y];
         }
-
+        
         return seam;
     }
     
-    // remove horizontal seam from curent picture
-    public void removeHorizontalSeam(int[] seam) {
-        checkSeamValidity(seam, false);
+    // removes the vertical seam of the buffers: the pixels and energies right of the seam
+    // shift left by one, and only the energies whose neighbours changed are recomputed. The
+    // energy of a pixel does not depend on the orientation, so this serves both kinds
+    private void removeSeam(int[] seam) {
+        for (int y = 0; y < height; y++) {
+            int i = y * stride + seam[y];
+            System.arraycopy(pixels, i + 1, pixels, i, width - 1 - seam[y]);
+            System.arraycopy(energies, i + 1, energies, i, width - 1 - seam[y]);
+        }
         
-        transpose();
-        removeVerticalSeamInternal(seam);
-        transpose();
-    }
-    
-    // remove vertical seam from curent picture
-    public void removeVerticalSeam(int[] seam) {
-        checkSeamValidity(seam, true);
+        width--;
         
-        removeVerticalSeamInternal(seam);
-    }
-    
-    // unit testing
-    public static void main(String[] args) {
-        // run PrintEnergy ../test-input/6x5.png
-        // run ShowEnergy ../test-input/HJocean.png
-        // run ShowSeams ../test-input/HJocean.png
-        // run PrintSeams ../test-input/6x5.png
-        // run ResizeDemo ../test-input/HJocean.png 300 0
-    }
-    
-    // removeVerticalSeam implementation
-    private void removeVerticalSeamInternal(int[] seam) {
+        // in row y, the pixels left and right of the seam are new neighbours, and so are the
+        // pixels above (below) between the seam in row y and in row y - 1 (y + 1); as adjacent
+        // seam entries differ by at most 1, that is at most 4 pixels per row
         for (int y = 0; y < height; y++) {
-            int k = 0;
-            for (int x = 0; x < width; x++) {
-                if (x != seam[y]) {
-                    pixels[k][y] = pixels[x][y];
-                    k++;
-                }
+            int from = seam[y];
+            int to = seam[y];
+            if (y > 0) {
+                from = Math.min(from, seam[y - 1]);
+                to = Math.max(to, seam[y - 1]);
+            }
+            if (y < height - 1) {
+                from = Math.min(from, seam[y + 1]);
+                to = Math.max(to, seam[y + 1]);
+            }
+            for (int x = Math.max(0, from - 1); x <= Math.min(width - 1, to); x++) {
+                energies[y * stride + x] = computeEnergy(x, y);
             }
         }
-        
-        width--;
     }
     
     // set of validations
@@ -170,20 +295,20 @@ public class SeamCarver {
             throw new IllegalArgumentException("seam cannot be null");
         }
         
-        if (vertical && width <= 1) {
+        if (vertical && width() <= 1) {
             throw new IllegalArgumentException("width must be greatern than 1");
         }
         
-        if (!vertical && height <= 1) {
+        if (!vertical && height() <= 1) {
             throw new IllegalArgumentException("height must be greatern than 1");
         }
         
-        int length = vertical ? height : width;
+        int length = vertical ? height() : width();
         if (seam.length != length) {
             throw new IllegalArgumentException("seam size must be equals to the height of the picture");
         }
         
-        int limit = vertical ? width : height;
+        int limit = vertical ? width() : height();
         for (int i = 0; i < seam.length; i++) {
             if (seam[i] < 0 || seam[i] >= limit) {
                 throw new IllegalArgumentException("seam index is outside its prescribed range");
@@ -199,11 +324,55 @@ public class SeamCarver {
     private void storePictureData(Picture p) {
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                pixels[x][y] = p.getRGB(x, y);
+                pixels[y * stride + x] = p.getRGB(x, y);
             }
         }
     }
     
+    // energy of pixel at column x and row y, computed from the pixels around it
+    private double computeEnergy(int x, int y) {
+        // define the energy of a pixel at the border of the image to be 1000
+        if (x == 0 || x == width - 1 ||
+            y == 0 || y == height - 1) {
+            return MAX_ENERGY;
+        } else {
+            // get the energy of the interior pixel.        
+            int i = y * stride + x;
+            int deltaX = getSquaredGradient(pixels[i - 1], pixels[i + 1]);
+            int deltaY = getSquaredGradient(pixels[i - stride], pixels[i + stride]);
+            return Math.sqrt(deltaX + deltaY);
+        }
+    }
+    
+    // energies of the interior pixels of interior row y, with VectorEnergy
+    private void computeVectorRow(int y) {
+        try {
+            VECTOR_ROW.invokeExact(pixels, stride, width, y, energies);
+        } catch (Throwable e) {
+            throw new IllegalStateException("vector energy kernel failed", e);
+        }
+    }
+    
+    // whether carvers compute energies with VectorEnergy unless told otherwise
+    static boolean vectorized() {
+        return VECTOR_ROW != null;
+    }
+    
+    // VectorEnergy.row if it can be used: SeamCarver itself compiles and runs without the
+    // incubating module, in which case VectorEnergy must not even be loaded
+    private static MethodHandle vectorRow() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return null;
+        }
+        
+        try {
+            MethodType type = MethodType.methodType(void.class, int[].class, int.class, int.class, int.class, double[].class);
+            return MethodHandles.lookup().findStatic(Class.forName("VectorEnergy"), "row", type);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+    
     // square of the gradient: Δ^2(x, y) = R(x, y)^2 + G(x, y)^2 + B(x, y)^2
     private int getSquaredGradient(int lcolor, int rcolor) {        
         int lr = (lcolor >> 16) & 0xFF;
@@ -222,16 +391,17 @@ public class SeamCarver {
     }
     
     // column x and row y
-    private void relaxVertically(int x, int y, double[] energyTo, double[] oldEnergyTo, int[][] edgeTo) {
+    private void relaxVertically(int x, int y) {
+        int i = y * stride + x;
         if (y == 0) {
-            energyTo[x] = energy(x, y);
-            edgeTo[x][y] = -1;
+            energyTo[x] = energies[i];
+            edgeTo[i] = -1;
             return;
         }
         
         double min;
         int edge;
-
+        
         if (x == 0) {     
             // only have 2-edges (mid, right)
             double a = oldEnergyTo[x];
@@ -245,7 +415,7 @@ public class SeamCarver {
             double b = oldEnergyTo[x - 1];
             min = Math.min(a, b);
             edge = (a == min) ? x : x - 1;
-
+            
         } else {
             // for 3-edges
             double a = oldEnergyTo[x - 1];
@@ -261,24 +431,33 @@ public class SeamCarver {
                 edge = x + 1;
             }
         }
-            
-        energyTo[x] = min + energy(x, y);
-        edgeTo[x][y] = edge;
+        
+        energyTo[x] = min + energies[i];
+        edgeTo[i] = edge;
     }
     
-    // transposes the picture data
-    private void transpose() {
-        int[][] tPixels = new int[height][width];
+    // columns lo..hi-1 of row y of findSeam, split in halves down to parallelChunk columns
+    @SuppressWarnings("serial")
+    private class RowTask extends RecursiveAction {
+        private final int y;
+        private final int lo, hi;
         
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                tPixels[y][x] = pixels[x][y];
-            }
+        RowTask(int y, int lo, int hi) {
+            this.y = y;
+            this.lo = lo;
+            this.hi = hi;
         }
         
-        pixels = tPixels;
-        int temp = width;
-        width = height;
-        height = temp;
+        @Override
+        protected void compute() {
+            if (hi - lo >= 2 * parallelChunk) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new RowTask(y, lo, mid), new RowTask(y, mid, hi));
+            } else {
+                for (int x = lo; x < hi; x++) {
+                    relaxVertically(x, y);
+                }
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,9 @@
 import edu.princeton.cs.algs4.Picture;
 import junit.framework.TestCase;
+import java.io.File;
 import java.util.Iterator;
 import java.util.Arrays;
+import java.util.Random;
     
 import static org.junit.Assert.*;
 
@@ -217,4 +219,148 @@ public class SeamCarverTest extends TestCase {
         assertEquals(Math.sqrt(22808), sc.energy(2, 1), 0.01); // energy not affected
         assertEquals(Math.sqrt(31791), sc.energy(3, 1), 0.01); // energy changes
     }
-}
\ No newline at end of file
+    
+    public void testEnergy_MatchesFreshCarverAfterSeamRemovals() {
+        Random random = new Random(21);
+        SeamCarver sc = new SeamCarver(randomPicture(random, 40, 30));
+        
+        for (int i = 0; i < 20; i++) {
+            if (random.nextBoolean()) {
+                sc.removeVerticalSeam(randomSeam(random, sc.height(), sc.width()));
+            } else {
+                sc.removeHorizontalSeam(randomSeam(random, sc.width(), sc.height()));
+            }
+            
+            // the energies kept up to date match those of the picture carved so far
+            SeamCarver fresh = new SeamCarver(sc.picture());
+            for (int y = 0; y < sc.height(); y++) {
+                for (int x = 0; x < sc.width(); x++) {
+                    assertEquals(fresh.energy(x, y), sc.energy(x, y), 0.0);
+                }
+            }
+            assertTrue(Arrays.equals(fresh.findVerticalSeam(), sc.findVerticalSeam()));
+            assertTrue(Arrays.equals(fresh.findHorizontalSeam(), sc.findHorizontalSeam()));
+        }
+    }
+    
+    public void testFindHorizontalSeam_MatchesVerticalSeamOfTransposedPicture() {
+        Random random = new Random(22);
+        Picture picture = randomPicture(random, 30, 20);
+        SeamCarver sc = new SeamCarver(picture);
+        SeamCarver transposed = new SeamCarver(transpose(picture));
+        
+        for (int i = 0; i < 10; i++) {
+            int[] seam = sc.findHorizontalSeam();
+            assertTrue(Arrays.equals(transposed.findVerticalSeam(), seam));
+            sc.removeHorizontalSeam(seam);
+            transposed.removeVerticalSeam(seam);
+            
+            Picture expected = transpose(transposed.picture());
+            assertEquals(expected, sc.picture());
+        }
+    }
+    
+    public void testFindVerticalSeam_ParallelRowsMatchSequential() {
+        Random random = new Random(24);
+        Picture picture = randomPicture(random, 50, 40);
+        SeamCarver sequential = new SeamCarver(picture);
+        sequential.parallelRows(Integer.MAX_VALUE, 1);
+        SeamCarver parallel = new SeamCarver(picture);
+        parallel.parallelRows(1, 3);
+        
+        for (int i = 0; i < 20; i++) {
+            int[] seam = sequential.findVerticalSeam();
+            assertTrue(Arrays.equals(seam, parallel.findVerticalSeam()));
+            sequential.removeVerticalSeam(seam);
+            parallel.removeVerticalSeam(seam);
+        }
+    }
+    
+    public void testFindVerticalSeam_ParallelRowsKeepTieBreaking() {
+        // the interior of a one-colour picture has zero energy, so many seams tie
+        Picture picture = new Picture(40, 6);
+        SeamCarver sequential = new SeamCarver(picture);
+        sequential.parallelRows(Integer.MAX_VALUE, 1);
+        SeamCarver parallel = new SeamCarver(picture);
+        parallel.parallelRows(1, 2);
+        assertTrue(Arrays.equals(sequential.findVerticalSeam(), parallel.findVerticalSeam()));
+    }
+    
+    public void testParallelRows_ThrowsExceptionWhenChunkIsNotPositive() {
+        SeamCarver sc = new SeamCarver(new Picture("../test-input/6x5.png"));
+        
+        try {
+            sc.parallelRows(1, 0);
+            fail("Exception should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    private static Picture transpose(Picture picture) {
+        Picture transposed = new Picture(picture.height(), picture.width());
+        for (int y = 0; y < picture.height(); y++) {
+            for (int x = 0; x < picture.width(); x++) {
+                transposed.setRGB(y, x, picture.getRGB(x, y));
+            }
+        }
+        return transposed;
+    }
+    
+    public void testEnergy_VectorizedMatchesScalarBitForBit() {
+        // skipped without --add-modules jdk.incubator.vector, as both carvers would be scalar;
+        // with it, VectorEnergy (from src-vector/) must have been compiled and loaded
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return;
+        }
+        assertTrue("VectorEnergy is not on the class path", SeamCarver.vectorized());
+        
+        File[] files = new File("../test-input").listFiles();
+        Arrays.sort(files);
+        int pictures = 0;
+        for (File file : files) {
+            if (!file.getName().endsWith(".png")) {
+                continue;
+            }
+            Picture picture = new Picture(file.getPath());
+            assertSameEnergies(new SeamCarver(picture, false), new SeamCarver(picture, true));
+            pictures++;
+        }
+        assertTrue(pictures > 0);
+        
+        Random random = new Random(25);
+        for (int width = 1; width < 40; width++) {
+            Picture picture = randomPicture(random, width, 3 + random.nextInt(5));
+            assertSameEnergies(new SeamCarver(picture, false), new SeamCarver(picture, true));
+        }
+    }
+    
+    private static void assertSameEnergies(SeamCarver expected, SeamCarver actual) {
+        for (int y = 0; y < expected.height(); y++) {
+            for (int x = 0; x < expected.width(); x++) {
+                assertEquals(Double.doubleToRawLongBits(expected.energy(x, y)),
+                             Double.doubleToRawLongBits(actual.energy(x, y)));
+            }
+        }
+    }
+    
+    private static Picture randomPicture(Random random, int width, int height) {
+        Picture picture = new Picture(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                picture.setRGB(x, y, random.nextInt(1 << 24));
+            }
+        }
+        return picture;
+    }
+    
+    // a random valid seam of the given length, with entries in [0, limit)
+    private static int[] randomSeam(Random random, int length, int limit) {
+        int[] seam = new int[length];
+        seam[0] = random.nextInt(limit);
+        for (int i = 1; i < length; i++) {
+            seam[i] = Math.max(0, Math.min(limit - 1, seam[i - 1] + random.nextInt(3) - 1));
+        }
+        return seam;
+    }
+}